@@ -12,4 +12,7 @@ import org.springframework.stereotype.Component;
 public class Connection {
     private String userAgent;
     private String referer;
+    private int connectTimeout = 10000;
+    private int readTimeout = 60000;
+    private int maxBodySize = 2 * 1024 * 1024;
 }
@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawl-settings")
+public class CrawlSettings {
+    private int workers = 16;
+    private int perHostLimit = 4;
+    private long targetLatencyMs = 2000;
+    private int breakerFailureThreshold = 5;
+    private long breakerCooldownMs = 30000;
+    private int breakerMaxTrips = 10;
+    private String frontierDir = "frontier";
+    private int checkpointInterval = 10000;
+    private boolean incremental = false;
+    private int visitedMaxEntries = 500000;
+    private int visitedBloomBits = 10;
+    private int queueCapacity = 256;
+    private int parseWorkers = 2;
+    private int lemmaWorkers = Runtime.getRuntime().availableProcessors();
+    private int persistWorkers = 2;
+    private int persistBatchSize = 16;
+}
@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private double maxDocumentRatio = 0.8;
+    private int longQueryLemmas = 5;
+    private double minShouldMatchRatio = 0.7;
+    private long resultCacheMaxPages = 1_000_000;
+    private double bm25K1 = 1.2;
+    private double bm25B = 0.75;
+    private int searchThreads = Runtime.getRuntime().availableProcessors();
+}
@@ -5,17 +5,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import searchengine.config.SitesList;
+import searchengine.dto.ScoringMode;
 import searchengine.dto.responses.NotOkResponse;
 import searchengine.dto.responses.OkResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.model.SitePage;
 import searchengine.services.ApiService;
+import searchengine.services.MetricsService;
 import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -27,6 +30,7 @@ public class ApiController {
     private final SearchService searchService;
     private final StatisticsService statisticsService;
     private final ApiService apiService;
+    private final MetricsService metricsService;
     private final AtomicBoolean indexingProcessing = new AtomicBoolean(false);
     private final SitesList sitesList;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
@@ -36,6 +40,11 @@ public class ApiController {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(metricsService.getMetrics());
+    }
+
     @GetMapping("/startIndexing")
     public ResponseEntity startIndexing() {
         if (indexingProcessing.get()) {
@@ -82,11 +91,17 @@ public class ApiController {
             @RequestParam(required = false) String query,
             @RequestParam(required = false) String site,
             @RequestParam(required = false, defaultValue = "0") Integer offset,
-            @RequestParam(required = false, defaultValue = "20") Integer limit
+            @RequestParam(required = false, defaultValue = "20") Integer limit,
+            @RequestParam(required = false, defaultValue = "tf") String mode,
+            @RequestParam(required = false) String cursor
     ) throws IOException {
         if (query == null || query.isBlank()) {
             return ResponseEntity.badRequest().body(new NotOkResponse("Задан пустой поисковый запрос"));
         }
-        return searchService.search(query, site, offset, limit);
+        ScoringMode scoringMode = ScoringMode.of(mode);
+        if (scoringMode == null) {
+            return ResponseEntity.badRequest().body(new NotOkResponse("Неизвестный режим ранжирования: " + mode));
+        }
+        return searchService.search(query, site, offset, limit, scoringMode, cursor);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package searchengine.dto;
+
+import java.util.Arrays;
+
+/**
+ * Вхождения одной леммы в текст: порядковые номера слов и их границы в символах,
+ * в порядке возрастания позиции.
+ */
+public class LemmaOccurrences {
+    private int[] positions;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+
+    public LemmaOccurrences() {
+        this(4);
+    }
+
+    public LemmaOccurrences(int capacity) {
+        positions = new int[Math.max(1, capacity)];
+        starts = new int[positions.length];
+        ends = new int[positions.length];
+    }
+
+    public void add(int position, int start, int end) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        positions[count] = position;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int position(int index) {
+        return positions[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+}
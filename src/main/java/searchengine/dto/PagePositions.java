@@ -0,0 +1,7 @@
+package searchengine.dto;
+
+public interface PagePositions {
+    Integer getPageId();
+    Integer getLemmaId();
+    byte[] getPositions();
+}
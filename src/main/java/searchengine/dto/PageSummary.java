@@ -0,0 +1,9 @@
+package searchengine.dto;
+
+public interface PageSummary {
+    Integer getId();
+    Integer getSiteId();
+    String getPath();
+    String getTitle();
+    String getPlainText();
+}
@@ -0,0 +1,18 @@
+package searchengine.dto;
+
+/**
+ * Формула ранжирования результатов поиска.
+ * TF — сумма вхождений лемм, делённая на максимум по странице; BM25 — с учётом IDF
+ * лемм и длины страницы относительно средней по сайту.
+ */
+public enum ScoringMode {
+    TF,
+    BM25;
+
+    public static ScoringMode of(String name) {
+        for (ScoringMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) return mode;
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package searchengine.dto.responses;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,4 +14,10 @@ public class SearchResponse {
     private Boolean result;
     private Integer count;
     private List<SearchDataResponse> data;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String cursor;
+
+    public SearchResponse(Boolean result, Integer count, List<SearchDataResponse> data) {
+        this(result, count, data, null);
+    }
 }
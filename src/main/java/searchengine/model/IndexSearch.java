@@ -28,6 +28,8 @@ public class IndexSearch {
     @Column(name = "lemma_rank")
     @NotNull
     private int lemmaCount;
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
     @ManyToOne(cascade = CascadeType.REMOVE)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "page_id", insertable = false, updatable = false, nullable = false)
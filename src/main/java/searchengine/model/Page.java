@@ -27,6 +27,16 @@ public class Page {
     @NotNull
     @Column(columnDefinition = "MEDIUMTEXT")
     private String content;
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String title;
+    @Column(name = "plain_text", columnDefinition = "MEDIUMTEXT")
+    private String plainText;
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
     @ManyToOne()
     @JoinColumn(name = "site_id", nullable = false, insertable = false, updatable = false)
     private SitePage sitePage;
@@ -37,6 +47,11 @@ public class Page {
         this.path = page.getPath();
         this.code = page.getCode();
         this.content = page.getContent();
+        this.title = page.getTitle();
+        this.plainText = page.getPlainText();
+        this.etag = page.getEtag();
+        this.lastModified = page.getLastModified();
+        this.contentHash = page.getContentHash();
         this.sitePage = page.getSitePage();
     }
 }
\ No newline at end of file
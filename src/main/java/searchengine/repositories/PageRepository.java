@@ -4,8 +4,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.PageSummary;
 import searchengine.model.Page;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query(value = "select * from page t where t.site_id = :siteId and t.path = :path limit 1", nativeQuery = true)
@@ -14,6 +18,7 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query(value = "select count(p) from Page p where p.siteId = :siteId")
     Integer findCountRecordBySiteId(@Param("siteId") Integer siteId);
 
-    @Query(value = "select count(p) from Page p where (:siteId is null or siteId = :siteId)")
-    Integer getCountPages(@Param("siteId") Integer siteId);
+    @Query(value = "select p.id as id, p.site_id as siteId, p.path as path, p.title as title, p.plain_text as plainText "
+            + "from page p where p.id in (:ids)", nativeQuery = true)
+    List<PageSummary> findSummaries(@Param("ids") Collection<Integer> ids);
 }
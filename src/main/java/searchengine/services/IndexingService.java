@@ -1,8 +1,13 @@
 package searchengine.services;
 
+import searchengine.dto.LemmaOccurrences;
 import searchengine.model.Page;
 
+import java.util.Map;
+
 public interface IndexingService {
-    void indexHtml(String html, Page inexingPage);
-    void refreshIndex(String html, Page refreshPage);
+    void refreshLemmas(Map<String, LemmaOccurrences> lemmas, Page refreshPage);
+    void indexPages(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage);
+    void removePageIndex(Page page);
+    void removeSiteIndex(int siteId);
 }
@@ -1,9 +1,12 @@
 package searchengine.services;
 
+import searchengine.dto.LemmaOccurrences;
+
 import java.io.IOException;
 import java.util.Map;
 
 public interface LemmaService {
     Map<String, Integer> getLemmasFromText(String text) throws IOException;
-    String getLemmaByWord(String word);
+    Map<String, LemmaOccurrences> getLemmaOccurrences(String text);
+    Map<String, Number> getCacheStats();
 }
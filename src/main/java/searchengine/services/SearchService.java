@@ -1,9 +1,10 @@
 package searchengine.services;
 
 import org.springframework.http.ResponseEntity;
+import searchengine.dto.ScoringMode;
 
 import java.io.IOException;
 
 public interface SearchService {
-    ResponseEntity<Object> search(String query, String site, Integer offset, Integer limit) throws IOException;
+    ResponseEntity<Object> search(String query, String site, Integer offset, Integer limit, ScoringMode mode, String cursor) throws IOException;
 }
@@ -3,10 +3,9 @@ package searchengine.services.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import searchengine.config.Connection;
+import searchengine.config.CrawlSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
-import searchengine.model.Page;
 import searchengine.model.SitePage;
 import searchengine.model.Status;
 import searchengine.repositories.PageRepository;
@@ -15,12 +14,12 @@ import searchengine.services.ApiService;
 import searchengine.services.IndexingService;
 import searchengine.services.LemmaService;
 
+import java.net.URI;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
@@ -30,10 +29,13 @@ public class ApiServiceImpl implements ApiService {
     private final IndexingService indexingService;
     private final LemmaService lemmaService;
     private final SiteRepository siteRepository;
+    private final SiteRegistry siteRegistry;
     private final PageRepository pageRepository;
     private final SitesList sitesToIndexing;
-    private final Set<SitePage> sitePagesAllFromDB;
-    private final Connection connection;
+    private final PageFetcher pageFetcher;
+    private final CrawlScheduler crawlScheduler;
+    private final IndexingPipeline indexingPipeline;
+    private final CrawlSettings crawlSettings;
     private AtomicBoolean indexingProcessing;
 
     @Override
@@ -53,18 +55,18 @@ public class ApiServiceImpl implements ApiService {
     public void refreshPage(SitePage siteDomain, URL url) {
         SitePage existSitePage = siteRepository.getSitePageByUrl(siteDomain.getUrl());
         siteDomain.setId(existSitePage.getId());
-        ConcurrentHashMap<String, Page> resultForkJoinPageIndexer = new ConcurrentHashMap<>();
         try {
             log.info("Запущена переиндексация страницы: " + url.toString());
-            performPageRefresh(siteDomain, url, resultForkJoinPageIndexer);
+            performPageRefresh(siteDomain, url);
         } catch (SecurityException ex) {
             handlePageRefreshError(siteDomain, ex);
         }
         markSiteAsIndexed(siteDomain);
     }
 
-    private void performPageRefresh(SitePage siteDomain, URL url, ConcurrentHashMap<String, Page> resultForkJoinPageIndexer) {
-        PageFinder finder = new PageFinder(siteRepository, pageRepository, siteDomain, url.getPath(), resultForkJoinPageIndexer, connection, lemmaService, indexingService, indexingProcessing);
+    private void performPageRefresh(SitePage siteDomain, URL url) {
+        String path = UrlCanonicalizer.canonicalPath(siteDomain.getUrl(), "/", url.toString());
+        PageFinder finder = new PageFinder(siteRepository, pageRepository, siteDomain, path != null ? path : url.getPath(), null, pageFetcher, crawlSettings, lemmaService, indexingService, indexingProcessing, null, null);
         finder.refreshPage();
     }
 
@@ -72,14 +74,14 @@ public class ApiServiceImpl implements ApiService {
         SitePage sitePage = siteRepository.findById(siteDomain.getId()).orElseThrow();
         sitePage.setStatus(Status.FAILED);
         sitePage.setLastError(ex.getMessage());
-        siteRepository.save(sitePage);
+        siteRegistry.update(siteRepository.save(sitePage));
     }
 
     private void markSiteAsIndexed(SitePage siteDomain) {
         log.info("Проиндексирован сайт: " + siteDomain.getName());
         SitePage sitePage = siteRepository.findById(siteDomain.getId()).orElseThrow();
         sitePage.setStatus(Status.INDEXED);
-        siteRepository.save(sitePage);
+        siteRegistry.update(siteRepository.save(sitePage));
     }
 
     private void deleteSitePagesAndPagesInDB() {
@@ -92,14 +94,38 @@ public class ApiServiceImpl implements ApiService {
     private void deleteSitePageIfExistsInConfig(SitePage sitePageDb) {
         for (Site siteApp : sitesToIndexing.getSites()) {
             if (sitePageDb.getUrl().equals(siteApp.getUrl().toString())) {
-                siteRepository.deleteById(sitePageDb.getId());
+                if (isResumable(sitePageDb)) {
+                    log.info("Продолжение прерванной индексации " + sitePageDb.getUrl());
+                    markSiteAsIndexing(sitePageDb);
+                } else if (crawlSettings.isIncremental()) {
+                    log.info("Инкрементальная индексация " + sitePageDb.getUrl());
+                    CrawlFrontier.delete(frontierDirectory(), frontierName(sitePageDb));
+                    markSiteAsIndexing(sitePageDb);
+                } else {
+                    siteRepository.deleteById(sitePageDb.getId());
+                    indexingService.removeSiteIndex(sitePageDb.getId());
+                    siteRegistry.forget(sitePageDb.getId());
+                    CrawlFrontier.delete(frontierDirectory(), frontierName(sitePageDb));
+                }
             }
         }
     }
 
+    private boolean isResumable(SitePage sitePageDb) {
+        return sitePageDb.getStatus() != Status.INDEXED && CrawlFrontier.exists(frontierDirectory(), frontierName(sitePageDb));
+    }
+
+    private void markSiteAsIndexing(SitePage sitePageDb) {
+        sitePageDb.setStatus(Status.INDEXING);
+        sitePageDb.setLastError(null);
+        siteRegistry.update(siteRepository.save(sitePageDb));
+    }
+
     private void addSitePagesToDB() {
         for (Site siteApp : sitesToIndexing.getSites()) {
-            saveSitePageToDB(siteApp);
+            if (siteRepository.getSitePageByUrl(siteApp.getUrl().toString()) == null) {
+                saveSitePageToDB(siteApp);
+            }
         }
     }
 
@@ -108,61 +134,80 @@ public class ApiServiceImpl implements ApiService {
         sitePageDAO.setStatus(Status.INDEXING);
         sitePageDAO.setName(siteApp.getName());
         sitePageDAO.setUrl(siteApp.getUrl().toString());
-        siteRepository.save(sitePageDAO);
+        siteRegistry.update(siteRepository.save(sitePageDAO));
+        CrawlFrontier.delete(frontierDirectory(), frontierName(sitePageDAO));
     }
 
     private void indexAllSitePages() throws InterruptedException {
-        populateSitePagesFromDB();
-        removeNonConfiguredSites();
-        processSiteIndexing();
+        List<SitePage> sitePagesToIndex = siteRepository.findAll();
+        removeNonConfiguredSites(sitePagesToIndex);
+        processSiteIndexing(sitePagesToIndex);
         indexingProcessing.set(false);
     }
 
-    private void populateSitePagesFromDB() {
-        sitePagesAllFromDB.addAll(siteRepository.findAll());
-    }
-
-    private void removeNonConfiguredSites() {
+    private void removeNonConfiguredSites(List<SitePage> sitePagesToIndex) {
         List<String> urlsToIndex = new ArrayList<>();
         for (Site siteApp : sitesToIndexing.getSites()) {
             urlsToIndex.add(siteApp.getUrl().toString());
         }
-        sitePagesAllFromDB.removeIf(sitePage -> !urlsToIndex.contains(sitePage.getUrl()));
+        sitePagesToIndex.removeIf(sitePage -> !urlsToIndex.contains(sitePage.getUrl()));
     }
 
-    private void processSiteIndexing() throws InterruptedException {
-        List<Thread> indexingThreadList = new ArrayList<>();
-        for (SitePage siteDomain : sitePagesAllFromDB) {
-            indexingThreadList.add(startSiteIndexingThread(siteDomain));
+    private void processSiteIndexing(List<SitePage> sitePagesToIndex) {
+        List<CompletableFuture<Void>> sitesIndexing = new ArrayList<>();
+        for (SitePage siteDomain : sitePagesToIndex) {
+            sitesIndexing.add(startSiteIndexing(siteDomain));
         }
-        waitForAllThreads(indexingThreadList);
+        CompletableFuture.allOf(sitesIndexing.toArray(new CompletableFuture[0])).join();
     }
 
-    private Thread startSiteIndexingThread(SitePage siteDomain) {
-        Runnable indexSite = () -> {
-            ConcurrentHashMap<String, Page> resultForkJoinPageIndexer = new ConcurrentHashMap<>();
-            try {
-                log.info("Запущена индексация " + siteDomain.getUrl());
-                performSiteIndexing(siteDomain, resultForkJoinPageIndexer);
-            } catch (SecurityException ex) {
+    private CompletableFuture<Void> startSiteIndexing(SitePage siteDomain) {
+        log.info("Запущена индексация " + siteDomain.getUrl());
+        CrawlFrontier crawlFrontier = new CrawlFrontier(frontierDirectory(), frontierName(siteDomain), crawlSettings);
+        CrawlJob crawlJob = crawlScheduler.openJob(URI.create(siteDomain.getUrl()).getHost());
+        List<String> pendingPages = crawlFrontier.pending();
+        if (pendingPages.isEmpty()) {
+            pendingPages = List.of("/");
+        }
+        crawlJob.retain();
+        try {
+            for (String pendingPage : pendingPages) {
+                crawlJob.submit(new PageFinder(siteRepository, pageRepository, siteDomain, pendingPage, crawlFrontier, pageFetcher, crawlSettings, lemmaService, indexingService, indexingProcessing, indexingPipeline, crawlJob));
+            }
+        } finally {
+            crawlJob.release();
+        }
+        return crawlJob.completion().handle((ignored, ex) -> {
+            closeFrontier(siteDomain, crawlFrontier, ex == null && indexingProcessing.get());
+            if (ex != null) {
                 handleSiteIndexingError(siteDomain, ex);
+            } else {
+                finalizeSiteIndexing(siteDomain);
             }
-            finalizeSiteIndexing(siteDomain);
-        };
-        Thread thread = new Thread(indexSite);
-        thread.start();
-        return thread;
+            return null;
+        });
     }
 
-    private void performSiteIndexing(SitePage siteDomain, ConcurrentHashMap<String, Page> resultForkJoinPageIndexer) {
-        new ForkJoinPool().invoke(new PageFinder(siteRepository, pageRepository, siteDomain, "", resultForkJoinPageIndexer, connection, lemmaService, indexingService, indexingProcessing));
+    private void closeFrontier(SitePage siteDomain, CrawlFrontier crawlFrontier, boolean completed) {
+        crawlFrontier.close();
+        if (completed) {
+            CrawlFrontier.delete(frontierDirectory(), frontierName(siteDomain));
+        }
     }
 
-    private void handleSiteIndexingError(SitePage siteDomain, SecurityException ex) {
+    private Path frontierDirectory() {
+        return Path.of(crawlSettings.getFrontierDir());
+    }
+
+    private String frontierName(SitePage sitePage) {
+        return URI.create(sitePage.getUrl()).getHost();
+    }
+
+    private void handleSiteIndexingError(SitePage siteDomain, Throwable ex) {
         SitePage sitePage = siteRepository.findById(siteDomain.getId()).orElseThrow();
         sitePage.setStatus(Status.FAILED);
         sitePage.setLastError(ex.getMessage());
-        siteRepository.save(sitePage);
+        siteRegistry.update(siteRepository.save(sitePage));
     }
 
     private void finalizeSiteIndexing(SitePage siteDomain) {
@@ -178,12 +223,6 @@ public class ApiServiceImpl implements ApiService {
         SitePage sitePage = siteRepository.findById(siteDomain.getId()).orElseThrow();
         sitePage.setStatus(Status.FAILED);
         sitePage.setLastError(errorMessage);
-        siteRepository.save(sitePage);
-    }
-
-    private void waitForAllThreads(List<Thread> threads) throws InterruptedException {
-        for (Thread thread : threads) {
-            thread.join();
-        }
+        siteRegistry.update(siteRepository.save(sitePage));
     }
 }
@@ -0,0 +1,178 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Число проиндексированных страниц и их длины в словах по сайтам.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CorpusStatistics {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, SiteTotals> totalsBySite = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void load() {
+        jdbcTemplate.query("select i.page_id, p.site_id, sum(i.lemma_rank) words from index_search i "
+                        + "join page p on p.id = i.page_id group by i.page_id, p.site_id",
+                (RowCallbackHandler) rs -> addPage(rs.getInt("site_id"), rs.getInt("page_id"), rs.getInt("words")));
+        log.info("Статистика корпуса загружена: " + pageCount(null) + " страниц на " + totalsBySite.size() + " сайтах");
+    }
+
+    /**
+     * Число проиндексированных страниц сайта siteId или всех сайтов, если siteId равен null.
+     */
+    public int pageCount(Integer siteId) {
+        if (siteId != null) {
+            SiteTotals totals = totalsBySite.get(siteId);
+            return totals == null ? 0 : totals.pages;
+        }
+        return totalsBySite.values().stream().mapToInt(totals -> totals.pages).sum();
+    }
+
+    /**
+     * Доля страниц своего сайта, на которых встречается лемма.
+     */
+    public double documentRatio(LemmaEntry entry) {
+        int pages = pageCount(entry.getSiteId());
+        return pages == 0 ? 0.0 : (double) entry.getDocumentFrequency() / pages;
+    }
+
+    public double averageLength(int siteId) {
+        SiteTotals totals = totalsBySite.get(siteId);
+        return totals == null || totals.pages == 0 ? 0.0 : (double) totals.words / totals.pages;
+    }
+
+    public PageLengths pageLengths(int siteId) {
+        SiteTotals totals = totalsBySite.get(siteId);
+        return totals == null ? PageLengths.EMPTY : totals.lengths;
+    }
+
+    synchronized void addPage(int siteId, int pageId, int words) {
+        SiteTotals totals = totalsBySite.computeIfAbsent(siteId, id -> new SiteTotals());
+        int previous = totals.lengths.put(pageId, words);
+        if (previous < 0) {
+            totals.pages++;
+            previous = 0;
+        }
+        totals.words += words - previous;
+    }
+
+    synchronized void removePage(int siteId, int pageId) {
+        SiteTotals totals = totalsBySite.get(siteId);
+        if (totals == null) return;
+        int words = totals.lengths.remove(pageId);
+        if (words < 0) return;
+        totals.pages--;
+        totals.words -= words;
+    }
+
+    synchronized void removeSite(int siteId) {
+        totalsBySite.remove(siteId);
+    }
+
+    private static final class SiteTotals {
+        private final PageLengths lengths = new PageLengths();
+        private volatile int pages;
+        private volatile long words;
+    }
+
+    /**
+     * Длины страниц сайта в словах: открытая адресация по id страницы без упаковки в объекты.
+     * Id 0 служит пустой ячейкой, автоинкрементные id страниц начинаются с 1.
+     * Таблица сжимается, когда после удалений заполнена меньше чем на восьмую часть.
+     */
+    public static final class PageLengths {
+        static final PageLengths EMPTY = new PageLengths();
+        private static final int MIN_CAPACITY = 16;
+
+        private int[] pageIds = new int[MIN_CAPACITY];
+        private int[] words = new int[MIN_CAPACITY];
+        private int size;
+
+        /**
+         * Длина страницы или 0, если страница неизвестна.
+         */
+        public synchronized int get(int pageId) {
+            int slot = find(pageId);
+            return pageIds[slot] == pageId ? words[slot] : 0;
+        }
+
+        public synchronized int size() {
+            return size;
+        }
+
+        synchronized int put(int pageId, int pageWords) {
+            int slot = find(pageId);
+            if (pageIds[slot] == pageId) {
+                int previous = words[slot];
+                words[slot] = pageWords;
+                return previous;
+            }
+            pageIds[slot] = pageId;
+            words[slot] = pageWords;
+            if (++size * 2 > pageIds.length) resize(pageIds.length * 2);
+            return -1;
+        }
+
+        synchronized int remove(int pageId) {
+            int slot = find(pageId);
+            if (pageIds[slot] != pageId) return -1;
+            int removed = words[slot];
+            int mask = pageIds.length - 1;
+            int next = (slot + 1) & mask;
+            while (pageIds[next] != 0) {
+                int home = mix(pageIds[next]) & mask;
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    pageIds[slot] = pageIds[next];
+                    words[slot] = words[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            pageIds[slot] = 0;
+            words[slot] = 0;
+            size--;
+            if (pageIds.length > MIN_CAPACITY && size * 8 < pageIds.length) resize(pageIds.length / 2);
+            return removed;
+        }
+
+        private int find(int pageId) {
+            int mask = pageIds.length - 1;
+            int slot = mix(pageId) & mask;
+            while (pageIds[slot] != 0 && pageIds[slot] != pageId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize(int capacity) {
+            int[] oldPageIds = pageIds;
+            int[] oldWords = words;
+            pageIds = new int[capacity];
+            words = new int[capacity];
+            for (int i = 0; i < oldPageIds.length; i++) {
+                if (oldPageIds[i] != 0) {
+                    int slot = find(oldPageIds[i]);
+                    pageIds[slot] = oldPageIds[i];
+                    words[slot] = oldWords[i];
+                }
+            }
+        }
+
+        private static int mix(int pageId) {
+            int h = pageId * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package searchengine.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlSettings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Фронтир обхода одного сайта, сохраняемый на диск: журнал добавленных в очередь (Q) путей
+ * и хэшей посещённых (V) путей плюс периодический снимок, после которого журнал обрезается.
+ * Позволяет продолжить обход после остановки или перезапуска приложения.
+ * Путь считается посещённым только после фиксации индекса страницы, до этого он закреплён
+ * в памяти, поэтому страницы, не дошедшие до базы, после перезапуска скачиваются заново.
+ */
+@Slf4j
+public class CrawlFrontier {
+    private static final String QUEUED = "Q\t";
+    private static final String VISITED = "V\t";
+    private static final String BLOOM = "B\t";
+
+    private final Path logFile;
+    private final Path checkpointFile;
+    private final int checkpointInterval;
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final VisitedUrlSet visited;
+    private BufferedWriter logWriter;
+    private int recordsSinceCheckpoint = 0;
+    private boolean saturationReported = false;
+
+    public CrawlFrontier(Path directory, String name, CrawlSettings crawlSettings) {
+        this.logFile = directory.resolve(name + ".log");
+        this.checkpointFile = directory.resolve(name + ".checkpoint");
+        this.checkpointInterval = crawlSettings.getCheckpointInterval();
+        this.visited = new VisitedUrlSet(crawlSettings.getVisitedMaxEntries(), crawlSettings.getVisitedBloomBits());
+        try {
+            Files.createDirectories(directory);
+            replay(checkpointFile);
+            replay(logFile);
+            pending.removeIf(visited::contains);
+            logWriter = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось открыть фронтир " + logFile, ex);
+        }
+    }
+
+    public static boolean exists(Path directory, String name) {
+        return Files.exists(directory.resolve(name + ".checkpoint")) || Files.exists(directory.resolve(name + ".log"));
+    }
+
+    public static void delete(Path directory, String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name + ".checkpoint"));
+            Files.deleteIfExists(directory.resolve(name + ".log"));
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить фронтир {}: {}", name, ex.getMessage());
+        }
+    }
+
+    /**
+     * Посещён или закреплён за обрабатываемой страницей.
+     */
+    public synchronized boolean isVisited(String path) {
+        return inFlight.contains(path) || visited.contains(path);
+    }
+
+    public synchronized boolean markQueued(String path) {
+        if (isVisited(path) || !pending.add(path)) return false;
+        append(QUEUED, path);
+        return true;
+    }
+
+    public synchronized boolean claim(String path) {
+        return !visited.contains(path) && inFlight.add(path);
+    }
+
+    public synchronized void unclaim(String path) {
+        inFlight.remove(path);
+    }
+
+    public synchronized boolean markVisited(String path) {
+        inFlight.remove(path);
+        long hash = VisitedUrlSet.hash(path);
+        if (!visited.addHash(hash)) return false;
+        pending.remove(path);
+        append(VISITED, toHex(hash));
+        if (visited.isSaturated() && !saturationReported) {
+            saturationReported = true;
+            log.warn("Фронтир {} заполнен, дальнейшие посещения учитываются только фильтром Блума", logFile);
+        }
+        return true;
+    }
+
+    public synchronized List<String> pending() {
+        return new ArrayList<>(pending);
+    }
+
+    public synchronized void checkpoint() {
+        Path tmpFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            for (String path : pending) writeRecord(writer, QUEUED, path);
+            writeVisited(writer);
+        } catch (IOException ex) {
+            log.warn("Не удалось записать снимок фронтира {}: {}", checkpointFile, ex.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logWriter.close();
+            logWriter = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            recordsSinceCheckpoint = 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось обновить фронтир " + logFile, ex);
+        }
+    }
+
+    public synchronized void close() {
+        checkpoint();
+        try {
+            logWriter.close();
+        } catch (IOException ex) {
+            log.warn("Не удалось закрыть фронтир {}: {}", logFile, ex.getMessage());
+        }
+    }
+
+    private void append(String type, String path) {
+        try {
+            writeRecord(logWriter, type, path);
+            logWriter.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось записать в фронтир " + logFile, ex);
+        }
+        if (++recordsSinceCheckpoint >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private void writeVisited(BufferedWriter writer) throws IOException {
+        for (long hash : visited.hashes()) writeRecord(writer, VISITED, toHex(hash));
+        if (visited.isSaturated()) {
+            long[] words = visited.bloomWords();
+            ByteBuffer buffer = ByteBuffer.allocate(words.length * Long.BYTES);
+            buffer.asLongBuffer().put(words);
+            writeRecord(writer, BLOOM, Base64.getEncoder().encodeToString(buffer.array()));
+        }
+    }
+
+    private static String toHex(long hash) {
+        return Long.toHexString(hash);
+    }
+
+    private void writeRecord(BufferedWriter writer, String type, String path) throws IOException {
+        writer.write(type);
+        writer.write(path);
+        writer.newLine();
+    }
+
+    private void replay(Path file) throws IOException {
+        if (!Files.exists(file)) return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(VISITED)) {
+                    visited.addHash(Long.parseUnsignedLong(line.substring(VISITED.length()), 16));
+                } else if (line.startsWith(QUEUED)) {
+                    pending.add(line.substring(QUEUED.length()));
+                } else if (line.startsWith(BLOOM)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(line.substring(BLOOM.length())));
+                    long[] words = new long[buffer.remaining() / Long.BYTES];
+                    buffer.asLongBuffer().get(words);
+                    visited.restoreBloom(words);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Очередь задач обхода одного сайта внутри общего {@link CrawlScheduler}.
+ * Всё изменяемое состояние защищено монитором планировщика.
+ */
+public class CrawlJob {
+    private final CrawlScheduler scheduler;
+    private final String host;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    final Deque<Runnable> queue = new ArrayDeque<>();
+    int pending;
+    Throwable failure;
+
+    CrawlJob(CrawlScheduler scheduler, String host) {
+        this.scheduler = scheduler;
+        this.host = host;
+    }
+
+    public void submit(Runnable task) {
+        scheduler.enqueue(this, task);
+    }
+
+    /**
+     * Удерживает задание незавершённым, пока страница проходит стадии конвейера после скачивания.
+     */
+    public void retain() {
+        scheduler.retain(this);
+    }
+
+    public void release() {
+        scheduler.release(this);
+    }
+
+    public void fail(Throwable ex) {
+        scheduler.fail(this, ex);
+    }
+
+    public void recordFetch(long latencyMillis, Exception error) {
+        scheduler.recordFetch(this, latencyMillis, error);
+    }
+
+    public boolean isHostDown() {
+        return scheduler.isHostDown(host);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    void finish() {
+        if (failure != null) {
+            completion.completeExceptionally(failure);
+        } else {
+            completion.complete(null);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий пул обхода сайтов: фиксированное число рабочих потоков на все сайты,
+ * адаптивное ограничение одновременных запросов к одному хосту и круговая выдача задач по сайтам.
+ * Задачи хоста, отключённого автоматом {@link HostThrottle}, ждут, а рабочие потоки уходят к другим хостам.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlScheduler {
+    private final CrawlSettings crawlSettings;
+    private final List<CrawlJob> jobs = new ArrayList<>();
+    private final Map<String, Integer> activeByHost = new HashMap<>();
+    private final Map<String, HostThrottle> throttles = new HashMap<>();
+    private int nextJob = 0;
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(crawlSettings.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "crawl-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < crawlSettings.getWorkers(); i++) {
+            workers.submit(this::workLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    public synchronized CrawlJob openJob(String host) {
+        CrawlJob job = new CrawlJob(this, host);
+        jobs.add(job);
+        throttles.remove(host);
+        return job;
+    }
+
+    synchronized void enqueue(CrawlJob job, Runnable task) {
+        job.queue.addLast(task);
+        job.pending++;
+        notifyAll();
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            CrawlJob job;
+            Runnable task;
+            synchronized (this) {
+                try {
+                    while ((job = nextReadyJob()) == null) {
+                        wait(hasQueuedTasks() ? 250 : 0);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task = job.queue.pollFirst();
+                activeByHost.merge(job.getHost(), 1, Integer::sum);
+            }
+            runTask(job, task);
+        }
+    }
+
+    private CrawlJob nextReadyJob() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < jobs.size(); i++) {
+            int index = (nextJob + i) % jobs.size();
+            CrawlJob job = jobs.get(index);
+            HostThrottle throttle = throttleFor(job.getHost());
+            if (!job.queue.isEmpty() && (throttle.isDead() || throttle.allows(activeByHost.getOrDefault(job.getHost(), 0), now))) {
+                nextJob = index + 1;
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasQueuedTasks() {
+        return jobs.stream().anyMatch(job -> !job.queue.isEmpty());
+    }
+
+    private HostThrottle throttleFor(String host) {
+        return throttles.computeIfAbsent(host, key -> new HostThrottle(crawlSettings));
+    }
+
+    synchronized boolean isHostDown(String host) {
+        return throttleFor(host).isDead();
+    }
+
+    synchronized void recordFetch(CrawlJob job, long latencyMillis, Exception error) {
+        HostThrottle throttle = throttleFor(job.getHost());
+        if (error == null || !isOverloadSignal(error)) {
+            throttle.onSuccess(latencyMillis);
+            return;
+        }
+        throttle.onFailure(System.currentTimeMillis());
+        if (throttle.isDead()) {
+            log.warn("Хост {} отключён после {} неудачных попыток восстановления", job.getHost(), crawlSettings.getBreakerMaxTrips());
+            fail(job, new IllegalStateException("Хост " + job.getHost() + " не отвечает"));
+        } else if (throttle.openUntil() > System.currentTimeMillis()) {
+            log.debug("Хост {} временно отключён, лимит {}", job.getHost(), throttle.getLimit());
+        }
+    }
+
+    public synchronized Map<String, Double> hostLimits() {
+        Map<String, Double> limits = new LinkedHashMap<>();
+        throttles.forEach((host, throttle) -> limits.put(host, throttle.getLimit()));
+        return limits;
+    }
+
+    private boolean isOverloadSignal(Exception error) {
+        if (error instanceof HttpStatusException statusException) {
+            return statusException.getStatusCode() >= 500 || statusException.getStatusCode() == 429;
+        }
+        return error instanceof HttpTimeoutException || error instanceof ConnectException;
+    }
+
+    private void runTask(CrawlJob job, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.error("Ошибка задачи обхода, хост: " + job.getHost(), ex);
+            fail(job, ex);
+        }
+        synchronized (this) {
+            activeByHost.merge(job.getHost(), -1, Integer::sum);
+            notifyAll();
+        }
+        release(job);
+    }
+
+    synchronized void retain(CrawlJob job) {
+        job.pending++;
+    }
+
+    void release(CrawlJob job) {
+        if (releasePending(job)) {
+            job.finish();
+        }
+    }
+
+    synchronized void fail(CrawlJob job, Throwable ex) {
+        if (job.failure == null) job.failure = ex;
+    }
+
+    private synchronized boolean releasePending(CrawlJob job) {
+        job.pending--;
+        if (job.pending > 0) return false;
+        jobs.remove(job);
+        return true;
+    }
+}
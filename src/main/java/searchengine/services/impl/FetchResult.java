@@ -0,0 +1,29 @@
+package searchengine.services.impl;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+@Getter
+@RequiredArgsConstructor
+public class FetchResult {
+    private final int statusCode;
+    private final byte[] body;
+    private final String charset;
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+
+    public boolean isNotModified() {
+        return statusCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+    }
+}
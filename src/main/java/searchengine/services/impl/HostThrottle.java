@@ -0,0 +1,66 @@
+package searchengine.services.impl;
+
+import searchengine.config.CrawlSettings;
+
+/**
+ * Адаптивный лимит параллельных запросов к одному хосту (AIMD) и автомат отключения хоста.
+ * Успешный быстрый ответ понемногу поднимает лимит, таймаут, 5xx, 429 или медленный ответ
+ * делят его пополам. После серии отказов подряд хост выключается на время охлаждения,
+ * затем пропускается один пробный запрос. Доступ синхронизирует {@link CrawlScheduler}.
+ */
+public class HostThrottle {
+    private final CrawlSettings crawlSettings;
+    private double limit;
+    private int consecutiveFailures = 0;
+    private int trips = 0;
+    private long openUntil = 0;
+    private boolean halfOpen = false;
+
+    public HostThrottle(CrawlSettings crawlSettings) {
+        this.crawlSettings = crawlSettings;
+        this.limit = Math.min(2, crawlSettings.getPerHostLimit());
+    }
+
+    public boolean allows(int active, long now) {
+        if (now < openUntil) return false;
+        if (halfOpen) return active == 0;
+        return active < (int) limit;
+    }
+
+    public long openUntil() {
+        return openUntil;
+    }
+
+    public boolean isDead() {
+        return trips >= crawlSettings.getBreakerMaxTrips();
+    }
+
+    public void onSuccess(long latencyMillis) {
+        consecutiveFailures = 0;
+        trips = 0;
+        halfOpen = false;
+        if (latencyMillis > crawlSettings.getTargetLatencyMs()) {
+            decrease();
+        } else {
+            limit = Math.min(crawlSettings.getPerHostLimit(), limit + 1.0 / limit);
+        }
+    }
+
+    public void onFailure(long now) {
+        decrease();
+        consecutiveFailures++;
+        if (halfOpen || consecutiveFailures >= crawlSettings.getBreakerFailureThreshold()) {
+            trips++;
+            halfOpen = true;
+            openUntil = now + crawlSettings.getBreakerCooldownMs();
+        }
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    private void decrease() {
+        limit = Math.max(1, limit / 2);
+    }
+}
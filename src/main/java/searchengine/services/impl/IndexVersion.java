@@ -0,0 +1,22 @@
+package searchengine.services.impl;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Номер версии индекса: растёт после каждой зафиксированной записи или удаления
+ * в index_search, по нему устаревают закэшированные результаты поиска.
+ */
+@Component
+public class IndexVersion {
+    private final AtomicLong version = new AtomicLong();
+
+    public long get() {
+        return version.get();
+    }
+
+    void increment() {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.LemmaOccurrences;
+import searchengine.model.Page;
+import searchengine.services.IndexingService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конвейер обработки скачанных страниц: разбор HTML и ссылок, лемматизация
+ * и пакетное сохранение выполняются отдельными стадиями со своими пулами.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingPipeline {
+    private final CrawlSettings crawlSettings;
+    private final IndexingService indexingService;
+    private final PageLatencyRecorder latencyRecorder;
+    private final PlatformTransactionManager transactionManager;
+    private TransactionTemplate transaction;
+    private PipelineStage<PageFinder> parseStage;
+    private PipelineStage<PageFinder> lemmaStage;
+    private PipelineStage<PageFinder> persistStage;
+
+    @PostConstruct
+    public void start() {
+        transaction = new TransactionTemplate(transactionManager);
+        int capacity = crawlSettings.getQueueCapacity();
+        persistStage = new PipelineStage<>("persist", capacity, crawlSettings.getPersistWorkers(), crawlSettings.getPersistBatchSize(), this::persist);
+        lemmaStage = new PipelineStage<>("lemma", capacity, crawlSettings.getLemmaWorkers(), 1, this::lemmatize);
+        parseStage = new PipelineStage<>("parse", capacity, crawlSettings.getParseWorkers(), 1, this::parse);
+    }
+
+    @PreDestroy
+    public void stop() {
+        parseStage.stop();
+        lemmaStage.stop();
+        persistStage.stop();
+    }
+
+    public void submit(PageFinder page) {
+        parseStage.put(page);
+    }
+
+    public void submitForPersist(PageFinder page) {
+        persistStage.put(page);
+    }
+
+    public Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        depths.put(parseStage.getName(), parseStage.queueDepth());
+        depths.put(lemmaStage.getName(), lemmaStage.queueDepth());
+        depths.put(persistStage.getName(), persistStage.queueDepth());
+        return depths;
+    }
+
+    private void parse(List<PageFinder> pages) {
+        for (PageFinder page : pages) {
+            try {
+                if (page.parse()) {
+                    lemmaStage.put(page);
+                } else {
+                    page.complete();
+                }
+            } catch (Exception ex) {
+                page.reject(ex);
+            }
+        }
+    }
+
+    private void lemmatize(List<PageFinder> pages) {
+        for (PageFinder page : pages) {
+            try {
+                page.lemmatize();
+                persistStage.put(page);
+            } catch (Exception ex) {
+                page.reject(ex);
+            }
+        }
+    }
+
+    private void persist(List<PageFinder> pages) {
+        try {
+            persistInTransaction(pages);
+        } catch (RuntimeException ex) {
+            pages.forEach(PageFinder::rollback);
+            if (pages.size() == 1) {
+                pages.get(0).reject(ex);
+                return;
+            }
+            log.debug("Пакет из " + pages.size() + " страниц не сохранён, страницы сохраняются по одной", ex);
+            pages.forEach(page -> persist(List.of(page)));
+        }
+    }
+
+    private void persistInTransaction(List<PageFinder> pages) {
+        transaction.executeWithoutResult(status -> {
+            Map<Page, Map<String, LemmaOccurrences>> lemmasByPage = new LinkedHashMap<>();
+            pages.forEach(page -> page.persist(lemmasByPage));
+            indexingService.indexPages(lemmasByPage);
+        });
+        long now = System.currentTimeMillis();
+        for (PageFinder page : pages) {
+            latencyRecorder.record(now - page.getFetchStartedAt());
+            page.complete();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import searchengine.services.impl.PostingList.Postings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обратный индекс в памяти: id леммы → сжатый список страниц с числом вхождений.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private static final Postings EMPTY = new Postings(new int[0], new int[0]);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, PostingList> postingsByLemma = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        ListBuilder builder = new ListBuilder();
+        jdbcTemplate.query("select lemma_id, page_id, lemma_rank from index_search order by lemma_id, page_id",
+                (RowCallbackHandler) rs -> builder.add(rs.getInt("lemma_id"), rs.getInt("page_id"), rs.getInt("lemma_rank")));
+        builder.flush();
+        log.info("Обратный индекс построен: " + postingsByLemma.size() + " лемм за " + (System.currentTimeMillis() - start) + " мс");
+    }
+
+    public Postings postings(int lemmaId) {
+        PostingList postingList = postingsByLemma.get(lemmaId);
+        return postingList == null ? EMPTY : postingList.read();
+    }
+
+    public int lemmaCount() {
+        return postingsByLemma.size();
+    }
+
+    void add(int lemmaId, int pageId, int count) {
+        postingsByLemma.computeIfAbsent(lemmaId, id -> new PostingList()).put(pageId, count);
+    }
+
+    void remove(Collection<Integer> lemmaIds, int pageId) {
+        for (Integer lemmaId : lemmaIds) {
+            PostingList postingList = postingsByLemma.get(lemmaId);
+            if (postingList != null) postingList.remove(pageId);
+        }
+    }
+
+    void removeLemmas(Collection<Integer> lemmaIds) {
+        lemmaIds.forEach(postingsByLemma::remove);
+    }
+
+    private class ListBuilder {
+        private int lemmaId = -1;
+        private int[] pageIds = new int[64];
+        private int[] counts = new int[64];
+        private int length = 0;
+
+        void add(int lemmaId, int pageId, int count) {
+            if (lemmaId != this.lemmaId) {
+                flush();
+                this.lemmaId = lemmaId;
+            }
+            if (length == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, length * 2);
+                counts = Arrays.copyOf(counts, length * 2);
+            }
+            pageIds[length] = pageId;
+            counts[length] = count;
+            length++;
+        }
+
+        void flush() {
+            if (length > 0) {
+                postingsByLemma.put(lemmaId, PostingList.build(pageIds, counts, length));
+            }
+            length = 0;
+        }
+    }
+}
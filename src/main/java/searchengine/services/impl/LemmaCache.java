@@ -0,0 +1,101 @@
+package searchengine.services.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кэш «словоформа → лемма». Ключи распределены по сегментам, каждый сегмент —
+ * LinkedHashMap в порядке доступа под своей блокировкой, при переполнении вытесняется
+ * давно не использованное слово. Разбор слова выполняется вне блокировки.
+ */
+public class LemmaCache {
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LemmaCache(int maxSize, int segmentCount) {
+        int count = Math.max(1, segmentCount);
+        int segmentSize = Math.max(1, maxSize / count);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public WordLemma get(String word, Function<String, WordLemma> loader) {
+        Segment segment = segments[Math.floorMod(word.hashCode(), segments.length)];
+        WordLemma cached;
+        synchronized (segment) {
+            cached = segment.get(word);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        WordLemma loaded = loader.apply(word);
+        synchronized (segment) {
+            segment.put(word, loaded);
+        }
+        return loaded;
+    }
+
+    public Map<String, Number> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    /**
+     * Результат разбора словоформы: нормальная форма (пустая, если слово не разобрано)
+     * и признак служебной части речи.
+     */
+    public static final class WordLemma {
+        private final String lemma;
+        private final boolean functionWord;
+
+        public WordLemma(String lemma, boolean functionWord) {
+            this.lemma = lemma;
+            this.functionWord = functionWord;
+        }
+
+        public String getLemma() {
+            return lemma;
+        }
+
+        public boolean isFunctionWord() {
+            return functionWord;
+        }
+
+        public boolean isIndexable() {
+            return !functionWord && !lemma.isEmpty();
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<String, WordLemma> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WordLemma> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь лемм в памяти: по сайту и тексту леммы — id строки lemma и документная частота.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Map<String, LemmaEntry>> lemmasBySite = new ConcurrentHashMap<>();
+    private final Map<Integer, LemmaEntry> lemmasById = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.query("select l.id, l.site_id, l.lemma, count(i.page_id) pages from lemma l "
+                        + "left join index_search i on i.lemma_id = l.id group by l.id, l.site_id, l.lemma",
+                (RowCallbackHandler) rs -> register(rs.getInt("site_id"), rs.getString("lemma"), rs.getInt("id"))
+                        .addDocuments(rs.getInt("pages")));
+        log.info("Словарь лемм загружен: " + lemmasById.size() + " лемм за " + (System.currentTimeMillis() - start) + " мс");
+    }
+
+    public LemmaEntry get(int siteId, String lemma) {
+        Map<String, LemmaEntry> lemmas = lemmasBySite.get(siteId);
+        return lemmas == null ? null : lemmas.get(lemma);
+    }
+
+    /**
+     * Записи леммы на сайте siteId или на всех сайтах, если siteId равен null.
+     */
+    public List<LemmaEntry> find(String lemma, Integer siteId) {
+        List<LemmaEntry> entries = new ArrayList<>();
+        if (siteId != null) {
+            LemmaEntry entry = get(siteId, lemma);
+            if (entry != null) entries.add(entry);
+            return entries;
+        }
+        for (Map<String, LemmaEntry> lemmas : lemmasBySite.values()) {
+            LemmaEntry entry = lemmas.get(lemma);
+            if (entry != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    public int size() {
+        return lemmasById.size();
+    }
+
+    /**
+     * Забывает леммы сайта и возвращает их id.
+     */
+    public List<Integer> removeSite(int siteId) {
+        List<Integer> lemmaIds = new ArrayList<>();
+        Map<String, LemmaEntry> lemmas = lemmasBySite.remove(siteId);
+        if (lemmas != null) {
+            lemmas.values().forEach(entry -> {
+                lemmasById.remove(entry.getId());
+                lemmaIds.add(entry.getId());
+            });
+        }
+        return lemmaIds;
+    }
+
+    LemmaEntry register(int siteId, String lemma, int id) {
+        LemmaEntry entry = lemmasBySite.computeIfAbsent(siteId, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(lemma, key -> new LemmaEntry(id, siteId, lemma));
+        lemmasById.putIfAbsent(entry.getId(), entry);
+        return entry;
+    }
+
+    void addDocuments(Collection<Integer> lemmaIds, int delta) {
+        for (Integer lemmaId : lemmaIds) {
+            LemmaEntry entry = lemmasById.get(lemmaId);
+            if (entry != null) entry.addDocuments(delta);
+        }
+    }
+}
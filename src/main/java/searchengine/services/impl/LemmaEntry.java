@@ -0,0 +1,39 @@
+package searchengine.services.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Запись словаря лемм: id строки таблицы lemma и число страниц сайта, на которых лемма встречается.
+ */
+public class LemmaEntry {
+    private final int id;
+    private final int siteId;
+    private final String lemma;
+    private final AtomicInteger documentFrequency = new AtomicInteger();
+
+    public LemmaEntry(int id, int siteId, String lemma) {
+        this.id = id;
+        this.siteId = siteId;
+        this.lemma = lemma;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public String getLemma() {
+        return lemma;
+    }
+
+    public int getDocumentFrequency() {
+        return documentFrequency.get();
+    }
+
+    void addDocuments(int delta) {
+        documentFrequency.addAndGet(delta);
+    }
+}
@@ -2,25 +2,32 @@ package searchengine.services.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.WrongCharaterException;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
+import searchengine.config.LemmaSettings;
+import searchengine.dto.LemmaOccurrences;
 import searchengine.services.LemmaService;
+import searchengine.services.impl.LemmaCache.WordLemma;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class LemmaServiceImpl implements LemmaService {
+    private static final WordLemma UNKNOWN_WORD = new WordLemma("", false);
+    private static final Set<String> FUNCTION_PARTS_OF_SPEECH = Set.of("ПРЕДЛ", "СОЮЗ", "МЕЖД");
+
     private final LuceneMorphology luceneMorphology;
+    private final LemmaCache lemmaCache;
 
-    public LemmaServiceImpl() {
+    public LemmaServiceImpl(LemmaSettings lemmaSettings) {
         this.luceneMorphology = initializeMorphology();
+        this.lemmaCache = new LemmaCache(lemmaSettings.getCacheSize(), lemmaSettings.getCacheSegments());
     }
 
     private LuceneMorphology initializeMorphology() {
@@ -35,79 +42,59 @@ public class LemmaServiceImpl implements LemmaService {
     @Override
     public Map<String, Integer> getLemmasFromText(String html) {
         Map<String, Integer> lemmasInText = new HashMap<>();
-        String text = extractTextFromHtml(html);
-        List<String> words = extractWordsFromText(text);
-        words.forEach(word -> determineLemma(word, lemmasInText));
+        String text = PageText.of(Jsoup.parse(html));
+        WordTokenizer.forEachWord(text, word -> determineLemma(word, lemmasInText));
         return lemmasInText;
     }
 
-    private String extractTextFromHtml(String html) {
-        return Jsoup.parse(html).text();
-    }
-
-    private List<String> extractWordsFromText(String text) {
-        return new ArrayList<>(List.of(text.toLowerCase().split("[^a-zа-я]+")));
+    @Override
+    public Map<String, LemmaOccurrences> getLemmaOccurrences(String text) {
+        Map<String, LemmaOccurrences> occurrences = new HashMap<>();
+        WordTokenizer.forEachWord(text, (word, position, start, end) -> {
+            WordLemma wordLemma = lemmaCache.get(word, this::analyzeWord);
+            if (wordLemma.isIndexable()) {
+                occurrences.computeIfAbsent(wordLemma.getLemma(), lemma -> new LemmaOccurrences()).add(position, start, end);
+            }
+        });
+        return occurrences;
     }
 
     @Override
-    public String getLemmaByWord(String word) {
-        String preparedWord = word.toLowerCase();
-        if (checkMatchWord(preparedWord)) return "";
-
-        return extractLemma(preparedWord);
+    public Map<String, Number> getCacheStats() {
+        return lemmaCache.stats();
     }
 
-    private String extractLemma(String word) {
+    private WordLemma analyzeWord(String word) {
         try {
             List<String> normalWordForms = luceneMorphology.getNormalForms(word);
-            String wordInfo = getWordInfo(word);
-            if (checkWordInfo(wordInfo)) return "";
-            return normalWordForms.get(0);
-        } catch (WrongCharaterException ex) {
+            return new WordLemma(normalWordForms.get(0), isFunctionWord(luceneMorphology.getMorphInfo(word)));
+        } catch (RuntimeException ex) {
             log.debug("Error processing word '{}': {}", word, ex.getMessage());
         }
-        return "";
-    }
-
-    private String getWordInfo(String word) {
-        return luceneMorphology.getMorphInfo(word).toString();
+        return UNKNOWN_WORD;
     }
 
     private void determineLemma(String word, Map<String, Integer> lemmasInText) {
-        try {
-            if (checkMatchWord(word)) return;
-
-            String normalWord = getNormalFormOfWord(word);
-            incrementLemmaCount(normalWord, lemmasInText);
-        } catch (RuntimeException ex) {
-            log.debug("Error processing word '{}': {}", word, ex.getMessage());
+        WordLemma wordLemma = lemmaCache.get(word, this::analyzeWord);
+        if (wordLemma.isIndexable()) {
+            incrementLemmaCount(wordLemma.getLemma(), lemmasInText);
         }
     }
 
-    private String getNormalFormOfWord(String word) {
-        List<String> normalWordForms = luceneMorphology.getNormalForms(word);
-        String wordInfo = getWordInfo(word);
-        if (checkWordInfo(wordInfo)) return "";
-        return normalWordForms.get(0);
-    }
-
     private void incrementLemmaCount(String lemma, Map<String, Integer> lemmasInText) {
-        lemmasInText.put(lemma, lemmasInText.getOrDefault(lemma, 0) + 1);
-    }
-
-    private boolean checkMatchWord(String word) {
-        return word.isEmpty() || isEnglishWord(word) || isNumeric(word);
+        lemmasInText.merge(lemma, 1, Integer::sum);
     }
 
-    private boolean isEnglishWord(String word) {
-        return String.valueOf(word.charAt(0)).matches("[a-z]");
-    }
-
-    private boolean isNumeric(String word) {
-        return String.valueOf(word.charAt(0)).matches("[0-9]");
-    }
-
-    private boolean checkWordInfo(String wordInfo) {
-        return wordInfo.contains("ПРЕДЛ") || wordInfo.contains("СОЮЗ") || wordInfo.contains("МЕЖД");
+    private boolean isFunctionWord(List<String> morphInfo) {
+        for (String info : morphInfo) {
+            int codeStart = info.indexOf('|');
+            int partStart = info.indexOf(' ', codeStart + 1) + 1;
+            if (codeStart < 0 || partStart == 0) continue;
+            int partEnd = info.indexOf(' ', partStart);
+            if (FUNCTION_PARTS_OF_SPEECH.contains(info.substring(partStart, partEnd < 0 ? info.length() : partEnd))) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,36 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.services.LemmaService;
+import searchengine.services.MetricsService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsServiceImpl implements MetricsService {
+    private final IndexingPipeline indexingPipeline;
+    private final CrawlScheduler crawlScheduler;
+    private final PageLatencyRecorder latencyRecorder;
+    private final LemmaDictionary lemmaDictionary;
+    private final InvertedIndex invertedIndex;
+    private final CorpusStatistics corpusStatistics;
+    private final LemmaService lemmaService;
+    private final QueryResultCache queryResultCache;
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pipelineQueueDepth", indexingPipeline.queueDepths());
+        metrics.put("crawlHostLimits", crawlScheduler.hostLimits());
+        metrics.put("fetchToPersistMs", latencyRecorder.summary());
+        metrics.put("lemmaDictionarySize", lemmaDictionary.size());
+        metrics.put("invertedIndexLemmas", invertedIndex.lemmaCount());
+        metrics.put("corpusPages", corpusStatistics.pageCount(null));
+        metrics.put("lemmaCache", lemmaService.getCacheStats());
+        metrics.put("searchResultCache", queryResultCache.stats());
+        return metrics;
+    }
+}
@@ -0,0 +1,127 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.stereotype.Component;
+import searchengine.config.Connection;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Общий HTTP-клиент обхода: пул keep-alive соединений, HTTP/2 там, где сервер его поддерживает,
+ * и сжатая передача (gzip, deflate).
+ */
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+    private final Connection connection;
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connection.getConnectTimeout()))
+                .build();
+    }
+
+    public FetchResult fetch(String url, String etag, String lastModified) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + connection.getReadTimeout();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(connection.getReadTimeout()))
+                .header("User-Agent", connection.getUserAgent())
+                .header("Referer", connection.getReferer())
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8")
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        if (etag != null) request.header("If-None-Match", etag);
+        if (lastModified != null) request.header("If-Modified-Since", lastModified);
+
+        HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        String responseEtag = response.headers().firstValue("ETag").orElse(null);
+        String responseLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        int statusCode = response.statusCode();
+        String contentType = response.headers().firstValue("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+        if (statusCode == 304 || statusCode >= 400 || !isHtml(contentType)) {
+            response.body().close();
+        }
+        if (statusCode == 304) {
+            return new FetchResult(statusCode, null, null, url, responseEtag, responseLastModified);
+        }
+        if (statusCode >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", statusCode, url);
+        }
+        if (!isHtml(contentType)) {
+            throw new UnsupportedMimeTypeException("Unhandled content type", contentType, url);
+        }
+
+        return new FetchResult(statusCode, readBody(response, deadline), charsetOf(contentType), response.uri().toString(), responseEtag, responseLastModified);
+    }
+
+    /**
+     * Как и Jsoup.connect, тело длиннее maxBodySize обрезается; 0 снимает ограничение.
+     * Таймаут запроса ограничивает только ожидание заголовков, поэтому к сроку readTimeout поток тела закрывается.
+     */
+    private byte[] readBody(HttpResponse<InputStream> response, long deadline) throws IOException {
+        CompletableFuture<Void> timeout = CompletableFuture.runAsync(() -> closeQuietly(response.body()),
+                CompletableFuture.delayedExecutor(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        try (InputStream body = decode(response)) {
+            int maxBodySize = connection.getMaxBodySize();
+            byte[] bytes = maxBodySize > 0 ? body.readNBytes(maxBodySize) : body.readAllBytes();
+            if (timeout.cancel(false)) return bytes;
+        } catch (IOException ex) {
+            if (timeout.cancel(false)) throw ex;
+        }
+        throw new HttpTimeoutException("Тело ответа не прочитано за " + connection.getReadTimeout() + " мс: " + response.uri());
+    }
+
+    private void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private boolean isHtml(String contentType) {
+        return contentType.isEmpty() || contentType.startsWith("text/") || contentType.contains("xml");
+    }
+
+    private InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(response.body());
+            case "deflate" -> new InflaterInputStream(response.body());
+            default -> response.body();
+        };
+    }
+
+    /**
+     * Кодировка из Content-Type или null, если её нет или она неизвестна: тогда Jsoup определит её сам.
+     */
+    private String charsetOf(String contentType) {
+        int index = contentType.indexOf("charset=");
+        if (index < 0) return null;
+        String charset = contentType.substring(index + "charset=".length()).replace("\"", "").split(";")[0].trim();
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
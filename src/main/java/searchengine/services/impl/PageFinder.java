@@ -2,10 +2,13 @@ package searchengine.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import searchengine.config.Connection;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.LemmaOccurrences;
 import searchengine.model.Page;
 import searchengine.model.SitePage;
 import searchengine.repositories.PageRepository;
@@ -13,65 +16,228 @@ import searchengine.repositories.SiteRepository;
 import searchengine.services.IndexingService;
 import searchengine.services.LemmaService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @RequiredArgsConstructor
-public class PageFinder extends RecursiveAction {
+public class PageFinder implements Runnable {
     private final IndexingService indexingService;
     private final LemmaService lemmaService;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final AtomicBoolean indexingProcessing;
-    private final Connection connection;
+    private final PageFetcher pageFetcher;
+    private final CrawlSettings crawlSettings;
     private final Set<String> urlSet = new HashSet<>();
+    private final List<String> claimedPaths = new ArrayList<>();
     private final String page;
     private final SitePage siteDomain;
-    private final ConcurrentHashMap<String, Page> resultForkJoinPoolIndexedPages;
+    private final CrawlFrontier crawlFrontier;
+    private final IndexingPipeline indexingPipeline;
+    private final CrawlJob crawlJob;
+    private Page indexingPage;
+    private Page existingPage;
+    private FetchResult fetchResult;
+    private Exception fetchError;
+    private Map<String, LemmaOccurrences> lemmas;
+    private long fetchStartedAt;
 
-    public PageFinder(SiteRepository siteRepository, PageRepository pageRepository, SitePage siteDomain, String page, ConcurrentHashMap<String, Page> resultForkJoinPoolIndexedPages, Connection connection, LemmaService lemmaService, IndexingService indexingService, AtomicBoolean indexingProcessing) {
+    public PageFinder(SiteRepository siteRepository, PageRepository pageRepository, SitePage siteDomain, String page, CrawlFrontier crawlFrontier, PageFetcher pageFetcher, CrawlSettings crawlSettings, LemmaService lemmaService, IndexingService indexingService, AtomicBoolean indexingProcessing, IndexingPipeline indexingPipeline, CrawlJob crawlJob) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.page = page;
-        this.resultForkJoinPoolIndexedPages = resultForkJoinPoolIndexedPages;
-        this.connection = connection;
+        this.crawlFrontier = crawlFrontier;
+        this.pageFetcher = pageFetcher;
+        this.crawlSettings = crawlSettings;
         this.indexingProcessing = indexingProcessing;
         this.siteDomain = siteDomain;
         this.lemmaService = lemmaService;
         this.indexingService = indexingService;
+        this.indexingPipeline = indexingPipeline;
+        this.crawlJob = crawlJob;
     }
 
     @Override
-    protected void compute() {
-        if (isAlreadyProcessed(page)) return;
+    public void run() {
+        if (isAlreadyProcessed(page) || crawlJob.isHostDown()) return;
 
-        Page indexingPage = createPage(page, siteDomain);
+        indexingPage = createPage(page, siteDomain);
+        existingPage = crawlSettings.isIncremental() ? pageRepository.findPageBySiteIdAndPath(page, siteDomain.getId()) : null;
 
+        fetchStartedAt = System.currentTimeMillis();
+        long start = fetchStartedAt;
         try {
-            Document doc = fetchDocument(indexingPage);
-
-            processPageContent(doc, indexingPage);
-            findAndProcessLinks(doc);
+            fetchResult = fetchPage(indexingPage, existingPage);
+            crawlJob.recordFetch(System.currentTimeMillis() - start, null);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
         } catch (Exception ex) {
-            handleException(ex, indexingPage);
+            crawlJob.recordFetch(System.currentTimeMillis() - start, ex);
+            if (!claim(page)) return;
+            if (existingPage != null && !isGone(ex)) {
+                markClaimedVisited();
+                return;
+            }
+            fetchError = ex;
+        }
+
+        crawlJob.retain();
+        try {
+            if (fetchError != null) {
+                indexingPipeline.submitForPersist(this);
+            } else {
+                indexingPipeline.submit(this);
+            }
+        } catch (RuntimeException ex) {
+            crawlJob.release();
+            throw ex;
         }
+    }
 
-        if (isAlreadyProcessed(page)) return;
+    boolean parse() throws Exception {
+        Document doc = parseDocument(indexingPage, existingPage, fetchResult);
+        fetchResult = null;
+        if (!adoptCanonicalPath(doc, indexingPage)) return false;
+        findAndProcessLinks(doc);
 
-        saveIndexingPage(indexingPage);
+        if (!indexingProcessing.get()) {
+            claimedPaths.forEach(crawlFrontier::unclaim);
+            claimedPaths.clear();
+            return false;
+        }
+        if (!claim(indexingPage.getPath())) return false;
         processSubPages();
+
+        if (crawlSettings.isIncremental() && !indexingPage.getPath().equals(page)) {
+            existingPage = pageRepository.findPageBySiteIdAndPath(indexingPage.getPath(), siteDomain.getId());
+        }
+        return existingPage == null || contentChanged() || validatorsChanged(existingPage, indexingPage);
+    }
+
+    void lemmatize() throws IOException {
+        if (existingPage == null || contentChanged()) {
+            lemmas = lemmaService.getLemmaOccurrences(indexingPage.getPlainText());
+        }
+    }
+
+    void persist(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage) {
+        if (fetchError != null && existingPage != null) {
+            removeGonePage(existingPage, fetchError);
+        } else if (fetchError != null) {
+            handleException(fetchError, indexingPage);
+        } else if (existingPage == null) {
+            saveIndexingPage(indexingPage);
+            lemmasByPage.put(indexingPage, lemmas);
+        } else if (contentChanged()) {
+            updateExistingPage(existingPage, indexingPage);
+            indexingService.removePageIndex(existingPage);
+            existingPage.setContent(null);
+            existingPage.setPlainText(null);
+            lemmasByPage.put(existingPage, lemmas);
+        } else {
+            existingPage.setEtag(indexingPage.getEtag());
+            existingPage.setLastModified(indexingPage.getLastModified());
+            pageRepository.save(existingPage);
+        }
+    }
+
+    void rollback() {
+        indexingPage.setId(0);
+    }
+
+    long getFetchStartedAt() {
+        return fetchStartedAt;
+    }
+
+    void complete() {
+        indexingPage.setContent(null);
+        indexingPage.setPlainText(null);
+        lemmas = null;
+        markClaimedVisited();
+        crawlJob.release();
+    }
+
+    void reject(Exception ex) {
+        if (claimedPaths.isEmpty() && !claim(page)) {
+            crawlJob.release();
+            return;
+        }
+        try {
+            if (existingPage == null) {
+                handleException(ex, indexingPage);
+            } else {
+                log.debug("Страница оставлена без изменений, siteId:{}, path:{}, error:{}", siteDomain.getId(), existingPage.getPath(), ex.getMessage());
+            }
+        } catch (RuntimeException saveError) {
+            fail(saveError);
+            return;
+        }
+        complete();
+    }
+
+    void fail(Exception ex) {
+        log.error("Ошибка обработки страницы, siteId:" + siteDomain.getId() + ", path:" + indexingPage.getPath(), ex);
+        crawlJob.fail(ex);
+        crawlJob.release();
+    }
+
+    private boolean claim(String path) {
+        if (!crawlFrontier.claim(path)) return false;
+        claimedPaths.add(path);
+        return true;
+    }
+
+    private void markClaimedVisited() {
+        claimedPaths.forEach(crawlFrontier::markVisited);
+        claimedPaths.clear();
+    }
+
+    private boolean isGone(Exception ex) {
+        return ex instanceof HttpStatusException statusException
+                && (statusException.getStatusCode() == 404 || statusException.getStatusCode() == 410);
+    }
+
+    private void removeGonePage(Page existingPage, Exception ex) {
+        indexingService.removePageIndex(existingPage);
+        setPageErrorCode(existingPage, ex);
+        existingPage.setEtag(null);
+        existingPage.setLastModified(null);
+        existingPage.setContentHash(null);
+        pageRepository.save(existingPage);
+        log.debug("Страница удалена с сайта, siteId:{}, path:{}, code:{}", existingPage.getSiteId(), existingPage.getPath(), existingPage.getCode());
+    }
+
+    private boolean contentChanged() {
+        return !Objects.equals(existingPage.getContentHash(), indexingPage.getContentHash());
+    }
+
+    private boolean adoptCanonicalPath(Document doc, Page indexingPage) {
+        Element canonicalLink = doc.selectFirst("link[rel=canonical]");
+        if (canonicalLink == null) return true;
+        String canonicalPath = UrlCanonicalizer.canonicalPath(siteDomain.getUrl(), page, canonicalLink.attr("href"));
+        if (canonicalPath == null || canonicalPath.equals(page)) return true;
+
+        claim(page);
+        indexingPage.setPath(canonicalPath);
+        return !crawlFrontier.isVisited(canonicalPath);
     }
 
     private boolean isAlreadyProcessed(String page) {
-        return resultForkJoinPoolIndexedPages.get(page) != null || !indexingProcessing.get();
+        return crawlFrontier.isVisited(page) || !indexingProcessing.get();
     }
 
     private Page createPage(String pagePath, SitePage siteDomain) {
@@ -81,30 +247,58 @@ public class PageFinder extends RecursiveAction {
         return page;
     }
 
-    private Document fetchDocument(Page page) throws Exception {
-        return Jsoup.connect(siteDomain.getUrl() + page.getPath())
-                .userAgent(connection.getUserAgent())
-                .referrer(connection.getReferer())
-                .timeout(60000)
-                .get();
+    private FetchResult fetchPage(Page page, Page existingPage) throws Exception {
+        boolean conditional = existingPage != null && existingPage.getContent() != null;
+        FetchResult result = pageFetcher.fetch(UrlCanonicalizer.absoluteUrl(siteDomain.getUrl(), page.getPath()),
+                conditional ? existingPage.getEtag() : null,
+                conditional ? existingPage.getLastModified() : null);
+        page.setEtag(result.getEtag());
+        page.setLastModified(result.getLastModified());
+        return result;
+    }
+
+    private Document parseDocument(Page page, Page existingPage, FetchResult result) throws Exception {
+        if (existingPage != null && existingPage.getContent() != null && result.isNotModified()) {
+            page.setContentHash(existingPage.getContentHash());
+            if (page.getEtag() == null) page.setEtag(existingPage.getEtag());
+            if (page.getLastModified() == null) page.setLastModified(existingPage.getLastModified());
+            return Jsoup.parse(existingPage.getContent(), result.getUrl());
+        }
+
+        Document doc = result.parse();
+        processPageContent(doc, result.getStatusCode(), page);
+        page.setContentHash(hashContent(page.getContent()));
+        page.setTitle(PageText.title(doc));
+        page.setPlainText(PageText.of(doc));
+        return doc;
+    }
+
+    private String hashContent(String content) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
     }
 
-    private void processPageContent(Document doc, Page page) throws Exception {
+    private boolean validatorsChanged(Page existingPage, Page page) {
+        return !Objects.equals(existingPage.getEtag(), page.getEtag())
+                || !Objects.equals(existingPage.getLastModified(), page.getLastModified());
+    }
+
+    private void processPageContent(Document doc, int statusCode, Page page) throws Exception {
         String content = doc.head() + doc.body().toString();
         if (content == null || content.isBlank()) {
             throw new Exception("Content of site id:" + page.getSiteId() + ", page:" + page.getPath() + " is null or empty");
         }
 
         page.setContent(content);
-        page.setCode(doc.connection().response().statusCode());
+        page.setCode(statusCode);
     }
 
     private void findAndProcessLinks(Document doc) {
         Elements pages = doc.getElementsByTag("a");
-        for (org.jsoup.nodes.Element element : pages) {
-            String href = element.attr("href");
-            if (!href.isEmpty() && href.charAt(0) == '/' && resultForkJoinPoolIndexedPages.get(href) == null) {
-                urlSet.add(href);
+        for (Element element : pages) {
+            String path = UrlCanonicalizer.canonicalPath(siteDomain.getUrl(), page, element.attr("href"));
+            if (path != null && !crawlFrontier.isVisited(path)) {
+                urlSet.add(path);
             }
         }
     }
@@ -115,8 +309,9 @@ public class PageFinder extends RecursiveAction {
     }
 
     private void setPageErrorCode(Page page, Exception ex) {
-        String message = ex.toString();
-        int errorCode = determineErrorCode(message);
+        int errorCode = ex instanceof HttpStatusException statusException
+                ? statusException.getStatusCode()
+                : determineErrorCode(ex.toString());
         page.setCode(errorCode);
     }
 
@@ -127,7 +322,8 @@ public class PageFinder extends RecursiveAction {
         if (message.contains("Status=403")) return 403;
         if (message.contains("Status=404")) return 404;
         if (message.contains("Status=500")) return 500;
-        if (message.contains("ConnectException: Connection refused")) return 500;
+        if (message.contains("ConnectException")) return 500;
+        if (message.contains("HttpTimeoutException")) return 504;
         if (message.contains("SSLHandshakeException")) return 525;
         if (message.contains("Status=503")) return 503;
         return -1;
@@ -142,41 +338,29 @@ public class PageFinder extends RecursiveAction {
     }
 
     private void saveIndexingPage(Page page) {
-        resultForkJoinPoolIndexedPages.putIfAbsent(page.getPath(), page);
         SitePage sitePage = siteRepository.findById(siteDomain.getId()).orElseThrow();
         sitePage.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
         siteRepository.save(sitePage);
         pageRepository.save(page);
-        indexingService.indexHtml(page.getContent(), page);
     }
 
     private void processSubPages() {
-        List<PageFinder> tasks = new ArrayList<>();
         for (String url : urlSet) {
-            if (resultForkJoinPoolIndexedPages.get(url) == null && indexingProcessing.get()) {
-                PageFinder task = new PageFinder(siteRepository, pageRepository, siteDomain, url,
-                                                 resultForkJoinPoolIndexedPages, connection, lemmaService,
-                                                 indexingService, indexingProcessing);
-                task.fork();
-                tasks.add(task);
+            if (indexingProcessing.get() && crawlFrontier.markQueued(url)) {
+                crawlJob.submit(new PageFinder(siteRepository, pageRepository, siteDomain, url,
+                                               crawlFrontier, pageFetcher, crawlSettings, lemmaService,
+                                               indexingService, indexingProcessing, indexingPipeline, crawlJob));
             }
         }
-        joinTasks(tasks);
-    }
-
-    private void joinTasks(List<PageFinder> tasks) {
-        for (PageFinder task : tasks) {
-            if (!indexingProcessing.get()) return;
-            task.join();
-        }
     }
 
     public void refreshPage() {
         Page page = createPage(this.page, siteDomain);
 
+        Map<String, LemmaOccurrences> pageLemmas;
         try {
-            Document doc = fetchDocument(page);
-            processPageContent(doc, page);
+            parseDocument(page, null, fetchPage(page, null));
+            pageLemmas = lemmaService.getLemmaOccurrences(page.getPlainText());
         } catch (Exception ex) {
             handleException(ex, page);
             return;
@@ -187,18 +371,27 @@ public class PageFinder extends RecursiveAction {
         siteRepository.save(sitePage);
 
         Page existingPage = pageRepository.findPageBySiteIdAndPath(page.getPath(), sitePage.getId());
-        saveOrUpdatePage(existingPage, page);
+        saveOrUpdatePage(existingPage, page, pageLemmas);
     }
 
-    private void saveOrUpdatePage(Page existingPage, Page newPage) {
+    private void updateExistingPage(Page existingPage, Page newPage) {
+        existingPage.setCode(newPage.getCode());
+        existingPage.setContent(newPage.getContent());
+        existingPage.setTitle(newPage.getTitle());
+        existingPage.setPlainText(newPage.getPlainText());
+        existingPage.setEtag(newPage.getEtag());
+        existingPage.setLastModified(newPage.getLastModified());
+        existingPage.setContentHash(newPage.getContentHash());
+        pageRepository.save(existingPage);
+    }
+
+    private void saveOrUpdatePage(Page existingPage, Page newPage, Map<String, LemmaOccurrences> lemmas) {
         if (existingPage != null) {
-            existingPage.setCode(newPage.getCode());
-            existingPage.setContent(newPage.getContent());
-            pageRepository.save(existingPage);
-            indexingService.refreshIndex(newPage.getContent(), existingPage);
+            updateExistingPage(existingPage, newPage);
+            indexingService.refreshLemmas(lemmas, existingPage);
         } else {
             pageRepository.save(newPage);
-            indexingService.refreshIndex(newPage.getContent(), newPage);
+            indexingService.refreshLemmas(lemmas, newPage);
         }
     }
 }
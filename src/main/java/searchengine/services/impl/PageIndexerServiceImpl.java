@@ -2,106 +2,215 @@ package searchengine.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import searchengine.model.IndexSearch;
-import searchengine.model.Lemma;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.dto.LemmaOccurrences;
 import searchengine.model.Page;
-import searchengine.repositories.IndexSearchRepository;
-import searchengine.repositories.LemmaRepository;
-import searchengine.services.LemmaService;
 import searchengine.services.IndexingService;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.TreeMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PageIndexerServiceImpl implements IndexingService {
-    private final LemmaService lemmaService;
-    private final LemmaRepository lemmaRepository;
-    private final IndexSearchRepository indexSearchRepository;
+    private static final int BATCH_ROWS = 500;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final LemmaDictionary lemmaDictionary;
+    private final InvertedIndex invertedIndex;
+    private final CorpusStatistics corpusStatistics;
+    private final IndexVersion indexVersion;
 
     @Override
-    public void indexHtml(String html, Page indexingPage) {
-        long start = System.currentTimeMillis();
-        try {
-            Map<String, Integer> lemmas = lemmaService.getLemmasFromText(html);
-            lemmas.entrySet().parallelStream().forEach(entry -> saveLemma(entry.getKey(), entry.getValue(), indexingPage));
-            log.debug("Индексация страницы заняла " + (System.currentTimeMillis() - start) + " мс, количество лемм: " + lemmas.size());
-        } catch (IOException e) {
-            log.error("Ошибка при индексации HTML: ", e);
-            throw new RuntimeException(e);
-        }
+    public void refreshLemmas(Map<String, LemmaOccurrences> lemmas, Page refreshPage) {
+        removePageIndex(refreshPage);
+        indexPages(Map.of(refreshPage, lemmas));
     }
 
     @Override
-    public void refreshIndex(String html, Page refreshPage) {
+    public void indexPages(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage) {
+        if (lemmasByPage.isEmpty()) return;
         long start = System.currentTimeMillis();
-        try {
-            Map<String, Integer> lemmas = lemmaService.getLemmasFromText(html);
-            refreshLemma(refreshPage);
-            indexSearchRepository.deleteAllByPageId(refreshPage.getId());
-            lemmas.entrySet().parallelStream().forEach(entry -> saveLemma(entry.getKey(), entry.getValue(), refreshPage));
-            log.debug("Обновление индекса страницы заняло " + (System.currentTimeMillis() - start) + " мс, количество лемм: " + lemmas.size());
-        } catch (IOException e) {
-            log.error("Ошибка при обновлении индекса HTML: ", e);
-            throw new RuntimeException(e);
-        }
+        Map<Integer, Map<String, Integer>> lemmaIdsBySite = inTransactionWithRetry(status -> writeBatch(lemmasByPage));
+        afterCommit(() -> {
+            updateMemoryIndexes(lemmasByPage, lemmaIdsBySite);
+            indexVersion.increment();
+        });
+        log.debug("Индексация " + lemmasByPage.size() + " страниц заняла " + (System.currentTimeMillis() - start) + " мс");
     }
 
-    @Transactional
-    private void refreshLemma(Page refreshPage) {
-        List<IndexSearch> indexes = indexSearchRepository.findAllByPageId(refreshPage.getId());
-        indexes.forEach(index -> {
-            Optional<Lemma> lemmaToRefresh = lemmaRepository.findById(index.getLemmaId());
-            lemmaToRefresh.ifPresent(lemma -> {
-                lemma.setFrequency(lemma.getFrequency() - index.getLemmaCount());
-                lemmaRepository.saveAndFlush(lemma);
-            });
+    @Override
+    public void removePageIndex(Page page) {
+        List<Integer> lemmaIds = inTransactionWithRetry(status -> {
+            List<Integer> pageLemmaIds = jdbcTemplate.queryForList("select lemma_id from index_search where page_id = ?", Integer.class, page.getId());
+            jdbcTemplate.update("update lemma set frequency = frequency - "
+                    + "(select i.lemma_rank from index_search i where i.lemma_id = lemma.id and i.page_id = ?) "
+                    + "where id in (select i.lemma_id from index_search i where i.page_id = ?)", page.getId(), page.getId());
+            jdbcTemplate.update("delete from index_search where page_id = ?", page.getId());
+            return pageLemmaIds;
+        });
+        afterCommit(() -> {
+            lemmaDictionary.addDocuments(lemmaIds, -1);
+            invertedIndex.remove(lemmaIds, page.getId());
+            if (!lemmaIds.isEmpty()) corpusStatistics.removePage(page.getSiteId(), page.getId());
+            indexVersion.increment();
         });
     }
 
-    @Transactional
-    private void saveLemma(String lemmaText, Integer frequency, Page page) {
-        Lemma existingLemma = lemmaRepository.lemmaExist(lemmaText, page.getSiteId());
-        if (existingLemma != null) {
-            existingLemma.setFrequency(existingLemma.getFrequency() + frequency);
-            lemmaRepository.saveAndFlush(existingLemma);
-            createIndex(page, existingLemma, frequency);
-        } else {
+    @Override
+    public void removeSiteIndex(int siteId) {
+        invertedIndex.removeLemmas(lemmaDictionary.removeSite(siteId));
+        corpusStatistics.removeSite(siteId);
+        indexVersion.increment();
+    }
+
+    private <T> T inTransactionWithRetry(TransactionCallback<T> work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transaction.execute(work);
+        }
+        for (int attempt = 1; ; attempt++) {
             try {
-                Lemma newLemma = new Lemma();
-                newLemma.setSiteId(page.getSiteId());
-                newLemma.setLemma(lemmaText);
-                newLemma.setFrequency(frequency);
-                newLemma.setSitePage(page.getSitePage());
-                lemmaRepository.saveAndFlush(newLemma);
-                createIndex(page, newLemma, frequency);
-            } catch (DataIntegrityViolationException ex) {
-                log.debug("Ошибка при сохранении леммы. Попробую снова.", ex);
-                saveLemma(lemmaText, frequency, page);
+                return transaction.execute(work);
+            } catch (PessimisticLockingFailureException ex) {
+                if (attempt >= MAX_ATTEMPTS) throw ex;
+                log.debug("Конфликт блокировок при сохранении лемм, попытка " + attempt, ex);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Map<Integer, Map<String, Integer>> writeBatch(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage) {
+        Map<Integer, TreeMap<String, Integer>> incrementsBySite = new TreeMap<>();
+        lemmasByPage.forEach((page, lemmas) -> {
+            TreeMap<String, Integer> increments = incrementsBySite.computeIfAbsent(page.getSiteId(), id -> new TreeMap<>());
+            lemmas.forEach((lemma, occurrences) -> increments.merge(lemma, occurrences.count(), Integer::sum));
+        });
+
+        Map<Integer, Map<String, Integer>> lemmaIdsBySite = new HashMap<>();
+        incrementsBySite.forEach((siteId, increments) -> {
+            upsertLemmas(siteId, increments);
+            lemmaIdsBySite.put(siteId, findLemmaIds(siteId, increments.keySet()));
+        });
+        insertIndexes(lemmasByPage, lemmaIdsBySite);
+        return lemmaIdsBySite;
+    }
+
+    private void updateMemoryIndexes(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage, Map<Integer, Map<String, Integer>> lemmaIdsBySite) {
+        lemmaIdsBySite.forEach((siteId, lemmaIds) -> lemmaIds.forEach((lemma, id) -> lemmaDictionary.register(siteId, lemma, id)));
+        lemmasByPage.forEach((page, lemmas) -> {
+            Map<String, Integer> lemmaIds = lemmaIdsBySite.getOrDefault(page.getSiteId(), Collections.emptyMap());
+            List<Integer> pageLemmaIds = new ArrayList<>(lemmas.size());
+            int words = 0;
+            for (Map.Entry<String, LemmaOccurrences> lemma : lemmas.entrySet()) {
+                Integer lemmaId = lemmaIds.get(lemma.getKey());
+                if (lemmaId != null) {
+                    pageLemmaIds.add(lemmaId);
+                    invertedIndex.add(lemmaId, page.getId(), lemma.getValue().count());
+                    words += lemma.getValue().count();
+                }
+            }
+            lemmaDictionary.addDocuments(pageLemmaIds, 1);
+            if (!pageLemmaIds.isEmpty()) corpusStatistics.addPage(page.getSiteId(), page.getId(), words);
+        });
+    }
+
+    private void upsertLemmas(int siteId, TreeMap<String, Integer> increments) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(increments.entrySet());
+        for (List<Map.Entry<String, Integer>> chunk : chunks(entries)) {
+            List<Object> args = new ArrayList<>(chunk.size() * 3);
+            for (Map.Entry<String, Integer> entry : chunk) {
+                args.add(siteId);
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            jdbcTemplate.update("insert into lemma (site_id, lemma, frequency) values " + placeholders(chunk.size(), 3)
+                    + " on duplicate key update frequency = frequency + values(frequency)", args.toArray());
+        }
+    }
+
+    private Map<String, Integer> findLemmaIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String lemma : lemmas) {
+            LemmaEntry entry = lemmaDictionary.get(siteId, lemma);
+            if (entry != null) {
+                ids.put(lemma, entry.getId());
+            } else {
+                unknown.add(lemma);
             }
         }
+        for (List<String> chunk : chunks(unknown)) {
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(siteId);
+            args.addAll(chunk);
+            jdbcTemplate.query("select id, lemma from lemma where site_id = ? and lemma in " + placeholders(1, chunk.size()),
+                    (RowCallbackHandler) rs -> ids.put(rs.getString("lemma"), rs.getInt("id")), args.toArray());
+        }
+        return ids;
     }
 
-    private void createIndex(Page page, Lemma lemma, Integer rank) {
-        IndexSearch existingIndex = indexSearchRepository.indexSearchExist(page.getId(), lemma.getId());
-        if (existingIndex != null) {
-            existingIndex.setLemmaCount(existingIndex.getLemmaCount() + rank);
-            indexSearchRepository.save(existingIndex);
-        } else {
-            IndexSearch index = new IndexSearch();
-            index.setPageId(page.getId());
-            index.setLemmaId(lemma.getId());
-            index.setLemmaCount(rank);
-            index.setLemma(lemma);
-            index.setPage(page);
-            indexSearchRepository.save(index);
+    private void insertIndexes(Map<Page, Map<String, LemmaOccurrences>> lemmasByPage, Map<Integer, Map<String, Integer>> lemmaIdsBySite) {
+        List<Object[]> rows = new ArrayList<>();
+        lemmasByPage.forEach((page, lemmas) -> {
+            Map<String, Integer> lemmaIds = lemmaIdsBySite.getOrDefault(page.getSiteId(), Collections.emptyMap());
+            lemmas.forEach((lemma, occurrences) -> {
+                Integer lemmaId = lemmaIds.get(lemma);
+                if (lemmaId == null) {
+                    log.debug("Не найден id леммы '{}' сайта {}", lemma, page.getSiteId());
+                    return;
+                }
+                rows.add(new Object[]{page.getId(), lemmaId, occurrences.count(), PositionCodec.encode(occurrences)});
+            });
+        });
+
+        for (List<Object[]> chunk : chunks(rows)) {
+            List<Object> args = new ArrayList<>(chunk.size() * 4);
+            for (Object[] row : chunk) {
+                Collections.addAll(args, row);
+            }
+            jdbcTemplate.update("insert into index_search (page_id, lemma_id, lemma_rank, positions) values " + placeholders(chunk.size(), 4), args.toArray());
         }
     }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_ROWS) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + BATCH_ROWS)));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int rows, int columns) {
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
 }
@@ -0,0 +1,56 @@
+package searchengine.services.impl;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержки от начала скачивания страницы до записи её индекса.
+ * Корзины по одной миллисекунде до MAX_MILLIS, всё дольше попадает в последнюю.
+ */
+@Component
+public class PageLatencyRecorder {
+    private static final int MAX_MILLIS = 60_000;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(MAX_MILLIS + 1);
+
+    public void record(long millis) {
+        buckets.incrementAndGet((int) Math.max(0, Math.min(MAX_MILLIS, millis)));
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return i;
+        }
+        return MAX_MILLIS;
+    }
+
+    public Map<String, Long> summary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", count());
+        summary.put("p50", percentile(50));
+        summary.put("p99", percentile(99));
+        return summary;
+    }
+}
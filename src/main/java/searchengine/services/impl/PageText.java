@@ -0,0 +1,51 @@
+package searchengine.services.impl;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Простой текст страницы для индекса и сниппетов: заголовок, затем текст body.
+ * Предложения разделены переводом строки, который ставится на место пробела после
+ * конца предложения, поэтому смещения слов совпадают с текстом до разбиения.
+ */
+public final class PageText {
+    public static final int MAX_TITLE_LENGTH = 255;
+
+    private PageText() {
+    }
+
+    public static String of(Document doc) {
+        String title = doc.title().trim();
+        String body = doc.body() == null ? "" : doc.body().text();
+        return splitSentences(title.isEmpty() ? body : title + "\n" + body);
+    }
+
+    public static String title(Document doc) {
+        String title = doc.title().trim();
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
+
+    /**
+     * Конец предложения — «.», «!», «?» или «…», возможно с закрывающей кавычкой или скобкой,
+     * за которыми идут пробел и заглавная буква, цифра или открывающая кавычка.
+     */
+    static String splitSentences(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 1; i + 1 < chars.length; i++) {
+            if (chars[i] != ' ' || !endsSentence(chars, i - 1)) continue;
+            char next = chars[i + 1];
+            if (Character.isUpperCase(next) || Character.isDigit(next) || next == '«' || next == '"') {
+                chars[i] = '\n';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean endsSentence(char[] chars, int index) {
+        char c = chars[index];
+        if (c == '»' || c == '"' || c == ')') {
+            if (index == 0) return false;
+            c = chars[index - 1];
+        }
+        return c == '.' || c == '!' || c == '?' || c == '…';
+    }
+}
@@ -0,0 +1,82 @@
+package searchengine.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Стадия конвейера индексации: ограниченная очередь и собственный пул обработчиков.
+ * Заполненная очередь блокирует предыдущую стадию, так медленная стадия притормаживает
+ * поступление работы, а не накапливает её в памяти.
+ */
+@Slf4j
+public class PipelineStage<T> {
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final Consumer<List<T>> handler;
+    private final ExecutorService workers;
+
+    public PipelineStage(String name, int capacity, int workerCount, int batchSize, Consumer<List<T>> handler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.handler = handler;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workLoop);
+        }
+    }
+
+    public void put(T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание очереди стадии " + name, ex);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    private void workLoop() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException ex) {
+                log.error("Ошибка стадии " + name, ex);
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services.impl;
+
+import searchengine.dto.LemmaOccurrences;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Компактная запись вхождений леммы в колонку index_search.positions.
+ * Для каждого вхождения пишутся три varint (по 7 бит в байте): прирост позиции
+ * относительно предыдущего вхождения, прирост начального смещения и длина слова.
+ */
+public final class PositionCodec {
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(LemmaOccurrences occurrences) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(occurrences.count() * 4);
+        int previousPosition = 0;
+        int previousStart = 0;
+        for (int i = 0; i < occurrences.count(); i++) {
+            writeVarint(out, occurrences.position(i) - previousPosition);
+            writeVarint(out, occurrences.start(i) - previousStart);
+            writeVarint(out, occurrences.end(i) - occurrences.start(i));
+            previousPosition = occurrences.position(i);
+            previousStart = occurrences.start(i);
+        }
+        return out.toByteArray();
+    }
+
+    public static LemmaOccurrences decode(byte[] data) {
+        LemmaOccurrences occurrences = new LemmaOccurrences();
+        if (data == null) return occurrences;
+        int[] offset = {0};
+        int position = 0;
+        int start = 0;
+        while (offset[0] < data.length) {
+            position += readVarint(data, offset);
+            start += readVarint(data, offset);
+            occurrences.add(position, start, start + readVarint(data, offset));
+        }
+        return occurrences;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] offset) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = data[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Повреждённая запись позиций");
+    }
+}
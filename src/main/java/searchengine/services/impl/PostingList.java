@@ -0,0 +1,163 @@
+package searchengine.services.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Список страниц одной леммы: упакованная основная часть (varint прироста id страницы
+ * и varint числа вхождений) и небольшой буфер последних изменений. Буфер вливается
+ * в основную часть при чтении или когда вырастает больше MAX_PENDING записей.
+ * Распакованный снимок хранится по мягкой ссылке до следующего слияния, так что повторные
+ * запросы по лемме не распаковывают список заново, а при нехватке памяти снимок освобождается.
+ */
+public class PostingList {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_PENDING = 256;
+    private static final int REMOVED = 0;
+
+    private byte[] packed = EMPTY;
+    private int size = 0;
+    private SoftReference<Postings> snapshot;
+    private final TreeMap<Integer, Integer> pending = new TreeMap<>();
+
+    public synchronized void put(int pageId, int count) {
+        pending.put(pageId, count);
+        if (pending.size() > MAX_PENDING) compact();
+    }
+
+    public synchronized void remove(int pageId) {
+        pending.put(pageId, REMOVED);
+        if (pending.size() > MAX_PENDING) compact();
+    }
+
+    public synchronized int size() {
+        if (!pending.isEmpty()) compact();
+        return size;
+    }
+
+    public synchronized Postings read() {
+        if (!pending.isEmpty()) compact();
+        Postings postings = snapshot == null ? null : snapshot.get();
+        if (postings == null) {
+            postings = decode();
+            snapshot = new SoftReference<>(postings);
+        }
+        return postings;
+    }
+
+    private Postings decode() {
+        int[] pageIds = new int[size];
+        int[] counts = new int[size];
+        int[] offset = {0};
+        int pageId = 0;
+        for (int i = 0; i < size; i++) {
+            pageId += readVarint(packed, offset);
+            pageIds[i] = pageId;
+            counts[i] = readVarint(packed, offset);
+        }
+        return new Postings(pageIds, counts);
+    }
+
+    /**
+     * Строит список по id страниц, уже упорядоченным по возрастанию.
+     */
+    static PostingList build(int[] pageIds, int[] counts, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length * 3);
+        int lastPageId = 0;
+        for (int i = 0; i < length; i++) {
+            writeVarint(out, pageIds[i] - lastPageId);
+            writeVarint(out, counts[i]);
+            lastPageId = pageIds[i];
+        }
+        PostingList postingList = new PostingList();
+        postingList.packed = out.toByteArray();
+        postingList.size = length;
+        return postingList;
+    }
+
+    private void compact() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length + pending.size() * 4);
+        int[] offset = {0};
+        int basePage = 0;
+        int remaining = size;
+        int lastWritten = 0;
+        int written = 0;
+        Map.Entry<Integer, Integer> change = pending.pollFirstEntry();
+        while (remaining > 0 || change != null) {
+            int page = 0;
+            int count = 0;
+            boolean fromBase = false;
+            if (remaining > 0) {
+                int mark = offset[0];
+                int nextPage = basePage + readVarint(packed, offset);
+                int nextCount = readVarint(packed, offset);
+                if (change != null && change.getKey() < nextPage) {
+                    offset[0] = mark;
+                } else {
+                    basePage = nextPage;
+                    remaining--;
+                    page = nextPage;
+                    count = nextCount;
+                    fromBase = true;
+                }
+            }
+            if (change != null && (!fromBase || change.getKey() == page)) {
+                page = change.getKey();
+                count = change.getValue();
+                change = pending.pollFirstEntry();
+            }
+            if (count == REMOVED) continue;
+            writeVarint(out, page - lastWritten);
+            writeVarint(out, count);
+            lastWritten = page;
+            written++;
+        }
+        packed = out.toByteArray();
+        size = written;
+        snapshot = null;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Распакованный снимок списка: id страниц по возрастанию и число вхождений леммы.
+     */
+    public static final class Postings {
+        private final int[] pageIds;
+        private final int[] counts;
+
+        public Postings(int[] pageIds, int[] counts) {
+            this.pageIds = pageIds;
+            this.counts = counts;
+        }
+
+        public int size() {
+            return pageIds.length;
+        }
+
+        public int pageId(int index) {
+            return pageIds[index];
+        }
+
+        public int count(int index) {
+            return counts[index];
+        }
+    }
+}
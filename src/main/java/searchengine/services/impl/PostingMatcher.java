@@ -0,0 +1,171 @@
+package searchengine.services.impl;
+
+import searchengine.services.impl.PostingList.Postings;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор страниц по спискам лемм запроса. Списки упорядочены по id страницы.
+ */
+public final class PostingMatcher {
+    private PostingMatcher() {
+    }
+
+    /**
+     * Страницы, где есть все леммы. Списки передаются от самого короткого: кандидаты
+     * берутся из первого и ищутся в остальных галопом, перебор прекращается,
+     * как только кандидатов не осталось.
+     */
+    public static Matches all(List<Postings> rarestFirst, TermScorer scorer) {
+        if (rarestFirst.isEmpty()) return Matches.EMPTY;
+        Postings first = rarestFirst.get(0);
+        Matches matches = new Matches(first.size());
+        for (int i = 0; i < first.size(); i++) {
+            matches.add(first.pageId(i), first.count(i), first.count(i), scorer.score(0, first.pageId(i), first.count(i)));
+        }
+        for (int list = 1; list < rarestFirst.size() && matches.size > 0; list++) {
+            Postings postings = rarestFirst.get(list);
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < matches.size && from < postings.size(); i++) {
+                from = gallop(postings, matches.pageIds[i], from);
+                if (from < postings.size() && postings.pageId(from) == matches.pageIds[i]) {
+                    int count = postings.count(from);
+                    matches.set(kept++, matches.pageIds[i], matches.sums[i] + count, Math.max(matches.maxCounts[i], count),
+                            matches.scores[i] + scorer.score(list, matches.pageIds[i], count));
+                }
+            }
+            matches.size = kept;
+        }
+        return matches;
+    }
+
+    /**
+     * Страницы, где встречается хотя бы minShouldMatch лемм: слияние всех списков через кучу курсоров.
+     */
+    public static Matches atLeast(List<Postings> postingsList, int minShouldMatch, TermScorer scorer) {
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> Integer.compare(
+                postingsList.get(a[0]).pageId(a[1]), postingsList.get(b[0]).pageId(b[1])));
+        for (int list = 0; list < postingsList.size(); list++) {
+            if (postingsList.get(list).size() > 0) cursors.add(new int[]{list, 0});
+        }
+        Matches matches = new Matches(16);
+        while (!cursors.isEmpty()) {
+            int pageId = postingsList.get(cursors.peek()[0]).pageId(cursors.peek()[1]);
+            int sum = 0;
+            int max = 0;
+            int matched = 0;
+            double score = 0;
+            while (!cursors.isEmpty() && postingsList.get(cursors.peek()[0]).pageId(cursors.peek()[1]) == pageId) {
+                int[] cursor = cursors.poll();
+                Postings postings = postingsList.get(cursor[0]);
+                int count = postings.count(cursor[1]);
+                sum += count;
+                max = Math.max(max, count);
+                matched++;
+                score += scorer.score(cursor[0], pageId, count);
+                if (++cursor[1] < postings.size()) cursors.add(cursor);
+            }
+            if (matched >= minShouldMatch) matches.add(pageId, sum, max, score);
+        }
+        return matches;
+    }
+
+    /**
+     * Первый индекс не меньше from, где id страницы не меньше target:
+     * шаг удваивается, пока не перескочит цель, затем двоичный поиск.
+     */
+    static int gallop(Postings postings, int target, int from) {
+        int size = postings.size();
+        if (from >= size || postings.pageId(from) >= target) return from;
+        int step = 1;
+        int low = from;
+        int high = from + 1;
+        while (high < size && postings.pageId(high) < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, size);
+        while (low + 1 < high) {
+            int middle = (low + high) >>> 1;
+            if (postings.pageId(middle) < target) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Вклад одной леммы в оценку страницы; list — номер списка во входных данных матчера.
+     */
+    @FunctionalInterface
+    public interface TermScorer {
+        TermScorer NONE = (list, pageId, count) -> 0.0;
+
+        double score(int list, int pageId, int count);
+    }
+
+    /**
+     * Найденные страницы: сумма и максимум числа вхождений лемм
+     * и сумма вкладов лемм по {@link TermScorer}.
+     */
+    public static final class Matches {
+        static final Matches EMPTY = new Matches(0);
+
+        private int[] pageIds;
+        private int[] sums;
+        private int[] maxCounts;
+        private double[] scores;
+        private int size;
+
+        Matches(int capacity) {
+            pageIds = new int[capacity];
+            sums = new int[capacity];
+            maxCounts = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageId(int index) {
+            return pageIds[index];
+        }
+
+        public int sum(int index) {
+            return sums[index];
+        }
+
+        public int maxCount(int index) {
+            return maxCounts[index];
+        }
+
+        public double score(int index) {
+            return scores[index];
+        }
+
+        private void add(int pageId, int sum, int maxCount, double score) {
+            if (size == pageIds.length) {
+                int capacity = Math.max(16, size * 2);
+                pageIds = Arrays.copyOf(pageIds, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                maxCounts = Arrays.copyOf(maxCounts, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            set(size++, pageId, sum, maxCount, score);
+        }
+
+        private void set(int index, int pageId, int sum, int maxCount, double score) {
+            pageIds[index] = pageId;
+            sums[index] = sum;
+            maxCounts[index] = maxCount;
+            scores[index] = score;
+        }
+    }
+}
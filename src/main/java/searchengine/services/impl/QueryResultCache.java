@@ -0,0 +1,111 @@
+package searchengine.services.impl;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.ScoringMode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш ранжированных результатов поиска по нормализованному запросу: отсортированный набор
+ * лемм, фильтр сайта и режим ранжирования. Запись действительна, пока не изменилась {@link IndexVersion}.
+ * Объём ограничен суммарным числом страниц во всех записях, при переполнении вытесняются
+ * давно не запрошенные. Хранимые массивы не изменяются.
+ */
+@Component
+public class QueryResultCache {
+    private final IndexVersion indexVersion;
+    private final long maxPages;
+    private final Map<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long cachedPages = 0;
+
+    public QueryResultCache(IndexVersion indexVersion, SearchSettings searchSettings) {
+        this.indexVersion = indexVersion;
+        this.maxPages = searchSettings.getResultCacheMaxPages();
+    }
+
+    public static String key(List<String> sortedLemmas, Integer siteId, ScoringMode mode) {
+        return mode + "|" + (siteId == null ? "*" : siteId.toString()) + "|" + String.join(" ", sortedLemmas);
+    }
+
+    public synchronized CachedResult get(String key) {
+        CachedResult result = results.get(key);
+        if (result != null && result.version == indexVersion.get()) {
+            hits.increment();
+            return result;
+        }
+        if (result != null) remove(key);
+        misses.increment();
+        return null;
+    }
+
+    public synchronized void put(String key, CachedResult result) {
+        if (result.version != indexVersion.get() || result.count > maxPages) return;
+        remove(key);
+        Iterator<CachedResult> eldest = results.values().iterator();
+        while (cachedPages + result.count > maxPages && eldest.hasNext()) {
+            cachedPages -= eldest.next().count;
+            eldest.remove();
+        }
+        results.put(key, result);
+        cachedPages += result.count;
+    }
+
+    public Map<String, Number> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Number> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", results.size());
+            stats.put("pages", cachedPages);
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    private void remove(String key) {
+        CachedResult removed = results.remove(key);
+        if (removed != null) cachedPages -= removed.count;
+    }
+
+    /**
+     * Леммы запроса и упорядоченные оценки найденных страниц по сайтам для версии индекса version.
+     */
+    public static final class CachedResult {
+        private final long version;
+        private final List<LemmaEntry> queryLemmas;
+        private final List<RankedPages> ranksBySite;
+        private final int count;
+
+        public CachedResult(long version, List<LemmaEntry> queryLemmas, List<RankedPages> ranksBySite) {
+            this.version = version;
+            this.queryLemmas = List.copyOf(queryLemmas);
+            this.ranksBySite = List.copyOf(ranksBySite);
+            this.count = this.ranksBySite.stream().mapToInt(RankedPages::size).sum();
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<LemmaEntry> getQueryLemmas() {
+            return queryLemmas;
+        }
+
+        public List<RankedPages> getRanksBySite() {
+            return ranksBySite;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
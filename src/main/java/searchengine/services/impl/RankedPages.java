@@ -0,0 +1,128 @@
+package searchengine.services.impl;
+
+/**
+ * Найденные страницы одного сайта в порядке выдачи: по убыванию релевантности,
+ * при равной релевантности — по возрастанию id страницы.
+ * Порядок строится лениво: упорядоченная часть растёт от начала массивов, остаток хранится
+ * как куча в их конце (корень — последний элемент), и из неё извлекается столько страниц,
+ * сколько запрошено через {@link #rankTo}.
+ */
+public final class RankedPages {
+    private final int[] pageIds;
+    private final double[] relevances;
+    private int ranked;
+
+    private RankedPages(int[] pageIds, double[] relevances) {
+        this.pageIds = pageIds;
+        this.relevances = relevances;
+        for (int node = pageIds.length / 2 - 1; node >= 0; node--) {
+            siftDown(node);
+        }
+    }
+
+    static RankedPages of(int[] pageIds, double[] relevances) {
+        return new RankedPages(pageIds, relevances);
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    /**
+     * Упорядочивает первые count страниц выдачи; уже упорядоченные не пересчитываются.
+     */
+    public synchronized void rankTo(int count) {
+        int limit = Math.min(count, pageIds.length);
+        while (ranked < limit) {
+            int root = slot(0);
+            int pageId = pageIds[root];
+            double relevance = relevances[root];
+            int last = ranked++;
+            pageIds[root] = pageIds[last];
+            relevances[root] = relevances[last];
+            siftDown(0);
+            pageIds[last] = pageId;
+            relevances[last] = relevance;
+        }
+    }
+
+    /**
+     * Страница на позиции index; позиция должна быть упорядочена вызовом {@link #rankTo}.
+     */
+    public int pageId(int index) {
+        return pageIds[index];
+    }
+
+    public double relevance(int index) {
+        return relevances[index];
+    }
+
+    /**
+     * Номер первой страницы, которая в выдаче идёт после страницы pageId с релевантностью relevance.
+     * Упорядоченная часть при необходимости достраивается до этой позиции.
+     */
+    public synchronized int indexAfter(double relevance, int pageId) {
+        while (ranked < pageIds.length
+                && (ranked == 0 || compare(relevances[ranked - 1], pageIds[ranked - 1], relevance, pageId) <= 0)) {
+            rankTo(Math.max(16, ranked * 2));
+        }
+        int low = 0;
+        int high = ranked;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(relevances[middle], pageIds[middle], relevance, pageId) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public synchronized double topRelevance() {
+        if (pageIds.length == 0) return 0.0;
+        rankTo(1);
+        return relevances[0];
+    }
+
+    /**
+     * Отрицательное значение, если первая страница идёт в выдаче раньше второй.
+     */
+    static int compare(double relevance, int pageId, double otherRelevance, int otherPageId) {
+        int byRelevance = Double.compare(otherRelevance, relevance);
+        return byRelevance != 0 ? byRelevance : Integer.compare(pageId, otherPageId);
+    }
+
+    synchronized void scale(double factor) {
+        for (int i = 0; i < relevances.length; i++) {
+            relevances[i] *= factor;
+        }
+    }
+
+    private int slot(int node) {
+        return pageIds.length - 1 - node;
+    }
+
+    private void siftDown(int node) {
+        int heapSize = pageIds.length - ranked;
+        int index = slot(node);
+        int pageId = pageIds[index];
+        double relevance = relevances[index];
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize) {
+                int left = slot(child);
+                int right = slot(child + 1);
+                if (compare(relevances[right], pageIds[right], relevances[left], pageIds[left]) < 0) child++;
+            }
+            int childIndex = slot(child);
+            if (compare(relevances[childIndex], pageIds[childIndex], relevance, pageId) >= 0) break;
+            pageIds[slot(node)] = pageIds[childIndex];
+            relevances[slot(node)] = relevances[childIndex];
+            node = child;
+        }
+        pageIds[slot(node)] = pageId;
+        relevances[slot(node)] = relevance;
+    }
+}
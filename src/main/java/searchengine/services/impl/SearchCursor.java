@@ -0,0 +1,59 @@
+package searchengine.services.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Курсор постраничной выдачи: хэш нормализованного запроса и оценка с id последней отданной
+ * страницы. Клиент получает его в виде непрозрачной строки. Курсор не привязан к версии индекса:
+ * если индекс изменился, выдача продолжается по новому ранжированию со страниц, идущих после
+ * пары (оценка, id) курсора, так что страницы, у которых изменилась оценка, могут повториться или выпасть.
+ */
+public final class SearchCursor {
+    private static final int LENGTH = Integer.BYTES + Double.BYTES + Integer.BYTES;
+
+    private final int queryHash;
+    private final double relevance;
+    private final int pageId;
+
+    public SearchCursor(int queryHash, double relevance, int pageId) {
+        this.queryHash = queryHash;
+        this.relevance = relevance;
+        this.pageId = pageId;
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+                .putInt(queryHash)
+                .putDouble(relevance)
+                .putInt(pageId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @return null, если строка не является курсором
+     */
+    public static SearchCursor decode(String value) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != LENGTH) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new SearchCursor(buffer.getInt(), buffer.getDouble(), buffer.getInt());
+    }
+
+    public int getQueryHash() {
+        return queryHash;
+    }
+
+    public double getRelevance() {
+        return relevance;
+    }
+
+    public int getPageId() {
+        return pageId;
+    }
+}
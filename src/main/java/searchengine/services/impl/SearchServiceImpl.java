@@ -4,182 +4,348 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.LemmaOccurrences;
+import searchengine.dto.PagePositions;
+import searchengine.dto.PageSummary;
 import searchengine.dto.RankDto;
+import searchengine.dto.ScoringMode;
 import searchengine.dto.responses.NotOkResponse;
 import searchengine.dto.responses.SearchDataResponse;
 import searchengine.dto.responses.SearchResponse;
-import searchengine.model.IndexSearch;
-import searchengine.model.Lemma;
-import searchengine.model.SitePage;
+import searchengine.model.Page;
 import searchengine.model.Status;
 import searchengine.repositories.IndexSearchRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
-import searchengine.repositories.SiteRepository;
 import searchengine.services.LemmaService;
 import searchengine.services.SearchService;
+import searchengine.services.impl.CorpusStatistics.PageLengths;
+import searchengine.services.impl.PostingList.Postings;
+import searchengine.services.impl.PostingMatcher.Matches;
+import searchengine.services.impl.PostingMatcher.TermScorer;
+import searchengine.services.impl.QueryResultCache.CachedResult;
+import searchengine.services.impl.SiteRegistry.SiteInfo;
+import searchengine.services.impl.SnippetHighlighter.Hit;
+import searchengine.services.impl.SnippetHighlighter.Snippet;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SearchServiceImpl implements SearchService {
-    private final SiteRepository siteRepository;
+    private final SiteRegistry siteRegistry;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final IndexSearchRepository indexRepository;
+    private final LemmaDictionary lemmaDictionary;
+    private final InvertedIndex invertedIndex;
+    private final CorpusStatistics corpusStatistics;
+    private final SearchSettings searchSettings;
+    private final QueryResultCache queryResultCache;
+    private final IndexVersion indexVersion;
     private final LemmaService lemmaService;
     private final Status indexSuccessStatus = Status.INDEXED;
-    private final double frequencyLimitProportion = 100.0;
+    private ExecutorService searchExecutor;
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, searchSettings.getSearchThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        searchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), runnable -> {
+            Thread thread = new Thread(runnable, "search-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        searchExecutor.shutdownNow();
+    }
 
     @Override
-    public ResponseEntity<Object> search(String query, String site, Integer offset, Integer limit) throws IOException {
+    public ResponseEntity<Object> search(String query, String site, Integer offset, Integer limit, ScoringMode mode, String cursor) throws IOException {
         if (checkIndexStatusNotIndexed(site)) {
             return ResponseEntity.badRequest().body(new NotOkResponse("Индексация сайта для поиска не закончена"));
         }
 
-        SitePage siteTarget = siteRepository.getSitePageByUrl(site);
-        Integer countPages = siteTarget != null ? pageRepository.getCountPages(siteTarget.getId()) : pageRepository.getCountPages(null);
+        SearchCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            after = SearchCursor.decode(cursor);
+            if (after == null) {
+                return ResponseEntity.badRequest().body(new NotOkResponse("Некорректный курсор"));
+            }
+        }
 
-        List<Lemma> sortedLemmasToSearch = getFilteredLemmasForSearch(query, siteTarget)
-                .stream()
-                .sorted(Comparator.comparingInt(Lemma::getFrequency))
-                .collect(Collectors.toList());
+        SiteInfo siteTarget = site == null || site.isBlank() ? null : siteRegistry.find(site);
+        Integer siteId = siteTarget != null ? siteTarget.getId() : null;
+        List<String> queryLemmas = new ArrayList<>(lemmaService.getLemmasFromText(query).keySet());
+        Collections.sort(queryLemmas);
 
-        if (sortedLemmasToSearch.isEmpty()) {
-            return ResponseEntity.ok(Collections.emptyList());
+        String cacheKey = QueryResultCache.key(queryLemmas, siteId, mode);
+        CachedResult result = queryResultCache.get(cacheKey);
+        if (result == null) {
+            long version = indexVersion.get();
+            List<LemmaEntry> sortedLemmasToSearch = getFilteredLemmasForSearch(queryLemmas, siteId)
+                    .stream()
+                    .sorted(Comparator.comparingInt(LemmaEntry::getDocumentFrequency))
+                    .collect(Collectors.toList());
+            List<RankedPages> ranksBySite = sortedLemmasToSearch.isEmpty() ? Collections.emptyList() : calculatePageRelevance(sortedLemmasToSearch, mode);
+            result = new CachedResult(version, sortedLemmasToSearch, ranksBySite);
+            queryResultCache.put(cacheKey, result);
         }
 
-        Map<Integer, IndexSearch> indexesByLemmas = getIndexesByLemmas(sortedLemmasToSearch);
-        if (indexesByLemmas.isEmpty()) {
+        if (after != null && after.getQueryHash() != cacheKey.hashCode()) {
+            return ResponseEntity.badRequest().body(new NotOkResponse("Курсор относится к другому запросу, повторите запрос без курсора"));
+        }
+        if (result.getCount() == 0) {
             return ResponseEntity.ok(new SearchResponse(true, 0, Collections.emptyList()));
         }
 
-        List<SearchDataResponse> searchDataResponses = buildSearchDataResponses(calculatePageRelevance(indexesByLemmas), query);
-        List<SearchDataResponse> paginatedResults = paginateResults(searchDataResponses, offset, limit);
+        int pageSize = Math.max(0, limit);
+        if (pageSize == 0) {
+            return ResponseEntity.ok(new SearchResponse(true, result.getCount(), Collections.emptyList()));
+        }
+        List<RankDto> window = after == null
+                ? selectWindow(result.getRanksBySite(), null, offset, pageSize + 1)
+                : selectWindow(result.getRanksBySite(), after, 0, pageSize + 1);
+        String nextCursor = null;
+        if (window.size() > pageSize) {
+            window.remove(pageSize);
+            RankDto last = window.get(pageSize - 1);
+            nextCursor = new SearchCursor(cacheKey.hashCode(), last.getRelativeRelevance(), last.getPageId()).encode();
+        }
+        hydratePages(window);
 
-        return ResponseEntity.ok(paginatedResults);
+        return ResponseEntity.ok(new SearchResponse(true, result.getCount(),
+                buildSearchDataResponses(window, result.getQueryLemmas()), nextCursor));
     }
 
-    private List<Lemma> getFilteredLemmasForSearch(String query, SitePage siteTarget) {
-        try {
-            return lemmaService.getLemmasFromText(query).keySet().stream()
-                    .map(it -> lemmaRepository.findLemmasByLemmaAndSiteId(it, siteTarget != null ? siteTarget.getId() : null))
-                    .flatMap(Collection::stream)
-                    .filter(e -> {
-                        Integer lemmaFrequency = lemmaRepository.findCountPageByLemma(e.getLemma(), e.getSiteId());
-                        return lemmaFrequency == null || (double) lemmaFrequency / (siteTarget != null ? pageRepository.getCountPages(siteTarget.getId()) : pageRepository.getCountPages(null)) <= frequencyLimitProportion;
-                    })
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private List<LemmaEntry> getFilteredLemmasForSearch(List<String> queryLemmas, Integer siteId) {
+        List<LemmaEntry> lemmas = queryLemmas.stream()
+                .map(it -> lemmaDictionary.find(it, siteId))
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+        List<LemmaEntry> filtered = lemmas.stream()
+                .filter(e -> corpusStatistics.documentRatio(e) <= searchSettings.getMaxDocumentRatio())
+                .collect(Collectors.toList());
+        return filtered.stream().map(LemmaEntry::getLemma).distinct().count() > 1 ? filtered : lemmas;
     }
 
-    private Map<Integer, IndexSearch> getIndexesByLemmas(List<Lemma> sortedLemmasToSearch) {
-        Map<Integer, IndexSearch> indexesByLemmas = indexRepository.findIndexesByLemma(sortedLemmasToSearch.get(0).getId())
-                .stream()
-                .collect(Collectors.toMap(IndexSearch::getPageId, index -> index));
+    private List<RankedPages> calculatePageRelevance(List<LemmaEntry> sortedLemmasToSearch, ScoringMode mode) {
+        int queryLemmaCount = (int) sortedLemmasToSearch.stream().map(LemmaEntry::getLemma).distinct().count();
+        int minShouldMatch = queryLemmaCount >= searchSettings.getLongQueryLemmas()
+                ? Math.max(1, (int) Math.ceil(queryLemmaCount * searchSettings.getMinShouldMatchRatio()))
+                : queryLemmaCount;
+        Map<Integer, List<LemmaEntry>> lemmasBySite = sortedLemmasToSearch.stream()
+                .collect(Collectors.groupingBy(LemmaEntry::getSiteId, LinkedHashMap::new, Collectors.toList()));
 
-        for (int i = 1; i < sortedLemmasToSearch.size(); i++) {
-            List<Integer> pagesToSave = indexRepository.findIndexesByLemma(sortedLemmasToSearch.get(i).getId()).stream()
-                    .map(IndexSearch::getPageId)
-                    .filter(indexesByLemmas::containsKey)
-                    .collect(Collectors.toList());
+        List<Callable<RankedPages>> tasks = new ArrayList<>();
+        lemmasBySite.forEach((siteId, siteLemmas) -> {
+            if (siteLemmas.size() >= minShouldMatch) {
+                tasks.add(() -> scoreSite(siteId, siteLemmas, mode, minShouldMatch == queryLemmaCount, minShouldMatch));
+            }
+        });
+        List<RankedPages> ranksBySite = scatter(tasks);
 
-            indexesByLemmas.keySet().retainAll(pagesToSave);
+        if (mode == ScoringMode.BM25) {
+            double maxScore = ranksBySite.stream().mapToDouble(RankedPages::topRelevance).max().orElse(0.0);
+            if (maxScore > 0) ranksBySite.forEach(ranks -> ranks.scale(1.0 / maxScore));
         }
+        return ranksBySite;
+    }
 
-        return indexesByLemmas;
+    private RankedPages scoreSite(int siteId, List<LemmaEntry> siteLemmas, ScoringMode mode, boolean matchAll, int minShouldMatch) {
+        List<Postings> postings = siteLemmas.stream()
+                .map(lemma -> invertedIndex.postings(lemma.getId()))
+                .sorted(Comparator.comparingInt(Postings::size))
+                .collect(Collectors.toList());
+        TermScorer scorer = mode == ScoringMode.BM25 ? bm25Scorer(siteId, postings) : TermScorer.NONE;
+        Matches matches = matchAll
+                ? PostingMatcher.all(postings, scorer)
+                : PostingMatcher.atLeast(postings, minShouldMatch, scorer);
+        int[] pageIds = new int[matches.size()];
+        double[] relevances = new double[matches.size()];
+        for (int i = 0; i < matches.size(); i++) {
+            pageIds[i] = matches.pageId(i);
+            relevances[i] = mode == ScoringMode.BM25
+                    ? matches.score(i)
+                    : (double) matches.sum(i) / matches.maxCount(i);
+        }
+        return RankedPages.of(pageIds, relevances);
     }
 
-    private Set<RankDto> calculatePageRelevance(Map<Integer, IndexSearch> indexesByLemmas) {
-        Map<Integer, RankDto> pageRelevanceMap = new HashMap<>();
-        for (IndexSearch index : indexesByLemmas.values()) {
-            RankDto rankPage = pageRelevanceMap.computeIfAbsent(index.getPageId(), id -> {
-                RankDto rank = new RankDto();
-                rank.setPage(index.getPage());
-                return rank;
-            });
-            rankPage.setPageId(index.getPageId());
-            rankPage.setAbsRelevance(rankPage.getAbsRelevance() + index.getLemmaCount());
-            rankPage.setMaxLemmaRank(Math.max(rankPage.getMaxLemmaRank(), index.getLemmaCount()));
+    private TermScorer bm25Scorer(int siteId, List<Postings> postings) {
+        double k1 = searchSettings.getBm25K1();
+        double b = searchSettings.getBm25B();
+        int pages = corpusStatistics.pageCount(siteId);
+        double averageLength = Math.max(1.0, corpusStatistics.averageLength(siteId));
+        PageLengths lengths = corpusStatistics.pageLengths(siteId);
+        double[] idf = new double[postings.size()];
+        for (int i = 0; i < idf.length; i++) {
+            int df = postings.get(i).size();
+            idf[i] = Math.log(1.0 + (Math.max(pages, df) - df + 0.5) / (df + 0.5));
         }
+        return (list, pageId, count) -> {
+            int words = lengths.get(pageId);
+            double length = words > 0 ? words : averageLength;
+            double norm = k1 * (1.0 - b + b * length / averageLength);
+            return idf[list] * count * (k1 + 1.0) / (count + norm);
+        };
+    }
+
+    private List<RankDto> selectWindow(List<RankedPages> ranksBySite, SearchCursor after, int offset, int limit) {
+        int from = Math.max(0, offset);
+        int size = (int) Math.min((long) from + Math.max(0, limit), Integer.MAX_VALUE);
+        if (from >= size) return Collections.emptyList();
 
-        pageRelevanceMap.values().forEach(rank -> rank.setRelativeRelevance(rank.getAbsRelevance() / rank.getMaxLemmaRank()));
-        return new HashSet<>(pageRelevanceMap.values());
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> {
+            RankedPages first = ranksBySite.get(a[0]);
+            RankedPages second = ranksBySite.get(b[0]);
+            return RankedPages.compare(first.relevance(a[1]), first.pageId(a[1]), second.relevance(b[1]), second.pageId(b[1]));
+        });
+        for (int site = 0; site < ranksBySite.size(); site++) {
+            RankedPages ranks = ranksBySite.get(site);
+            int start = after == null ? 0 : ranks.indexAfter(after.getRelevance(), after.getPageId());
+            ranks.rankTo((int) Math.min((long) start + size, Integer.MAX_VALUE));
+            if (start < ranks.size()) cursors.add(new int[]{site, start});
+        }
+        List<RankDto> window = new ArrayList<>(Math.min(size - from, 64));
+        for (int position = 0; position < size && !cursors.isEmpty(); position++) {
+            int[] cursor = cursors.poll();
+            RankedPages ranks = ranksBySite.get(cursor[0]);
+            if (position >= from) {
+                RankDto rank = new RankDto();
+                rank.setPageId(ranks.pageId(cursor[1]));
+                rank.setRelativeRelevance(ranks.relevance(cursor[1]));
+                window.add(rank);
+            }
+            if (++cursor[1] < ranks.size()) cursors.add(cursor);
+        }
+        return window;
     }
 
-    private List<SearchDataResponse> buildSearchDataResponses(Set<RankDto> pagesRelevance, String query) {
-        List<String> simpleLemmasFromSearch = null;
+    private <T> List<T> scatter(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
         try {
-            simpleLemmasFromSearch = lemmaService.getLemmasFromText(query).keySet().stream().collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        List<String> finalSimpleLemmasFromSearch = simpleLemmasFromSearch;
-        return pagesRelevance.stream()
-                .flatMap(rank -> {
-                    Document doc = Jsoup.parse(rank.getPage().getContent());
-                    return doc.body().getElementsMatchingOwnText("[\\p{IsCyrillic}]").stream()
-                            .map(Element::text)
-                            .map(sentence -> {
-                                StringBuilder textFromElement = new StringBuilder(sentence);
-                                List<String> words = Arrays.asList(sentence.split("[\\s:punct]"));
-                                long searchWordsCount = words.stream()
-                                        .map(word -> lemmaService.getLemmaByWord(word.replaceAll("\\p{Punct}", "")))
-                                        .filter(finalSimpleLemmasFromSearch::contains)
-                                        .peek(word -> markWord(textFromElement, word, 0))
-                                        .count();
-
-                                return searchWordsCount > 0 ? new SearchDataResponse(
-                                        siteRepository.findById(pageRepository.findById(rank.getPageId()).get().getSiteId()).get().getUrl(),
-                                        siteRepository.findById(pageRepository.findById(rank.getPageId()).get().getSiteId()).get().getName(),
-                                        rank.getPage().getPath(),
-                                        doc.title(),
-                                        textFromElement.toString(),
-                                        rank.getRelativeRelevance(),
-                                        (int) searchWordsCount
-                                ) : null;
-                            })
-                            .filter(Objects::nonNull);
-                })
-                .collect(Collectors.toList());
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+                return results;
+            }
+            for (Future<T> future : searchExecutor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Поиск прерван", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private List<SearchDataResponse> paginateResults(List<SearchDataResponse> searchDataResponses, Integer offset, Integer limit) {
-        return searchDataResponses.stream()
-                .sorted(Comparator.comparingDouble(SearchDataResponse::getRelevance).reversed())
-                .skip((long) offset * limit)
-                .limit(limit)
-                .sorted(Comparator.comparingInt(SearchDataResponse::getWordsFound).reversed())
-                .collect(Collectors.toList());
+    private void hydratePages(List<RankDto> window) {
+        if (window.isEmpty()) return;
+        Map<Integer, RankDto> ranksByPage = new HashMap<>();
+        window.forEach(rank -> ranksByPage.put(rank.getPageId(), rank));
+        pageRepository.findSummaries(ranksByPage.keySet()).forEach(page -> ranksByPage.get(page.getId()).setPage(page));
+        window.removeIf(rank -> rank.getPage() == null);
     }
 
-    private Boolean checkIndexStatusNotIndexed(String site) {
-        return site == null || site.isBlank()
-                ? siteRepository.findAll().stream().anyMatch(s -> !s.getStatus().equals(indexSuccessStatus))
-                : !siteRepository.getSitePageByUrl(site).getStatus().equals(indexSuccessStatus);
-    }
+    private List<SearchDataResponse> buildSearchDataResponses(List<RankDto> window, List<LemmaEntry> queryLemmas) {
+        Map<String, Integer> lemmaIndexes = new HashMap<>();
+        Map<Integer, Integer> lemmaIndexById = new HashMap<>();
+        for (LemmaEntry lemma : queryLemmas) {
+            int index = lemmaIndexes.computeIfAbsent(lemma.getLemma(), key -> lemmaIndexes.size() % Long.SIZE);
+            lemmaIndexById.put(lemma.getId(), index);
+        }
+        Map<Integer, List<Hit>> storedHits = findStoredHits(window, lemmaIndexById);
+        Map<Integer, SiteInfo> sites = siteRegistry.get(window.stream().map(rank -> rank.getPage().getSiteId()).collect(Collectors.toList()));
 
-    private void markWord(StringBuilder textFromElement, String word, int startPosition) {
-        int start = textFromElement.indexOf(word, startPosition);
-        if (start == -1) return;
+        List<SearchDataResponse> responses = new ArrayList<>();
+        for (RankDto rank : window) {
+            PageSummary page = rank.getPage();
+            SiteInfo site = sites.get(page.getSiteId());
+            if (site == null) continue;
+            String title = page.getTitle();
+            String text = page.getPlainText();
+            List<Hit> hits = text != null ? storedHits.get(page.getId()) : null;
+            if (text == null) {
+                Document doc = parseLegacyPage(page.getId());
+                title = PageText.title(doc);
+                text = PageText.of(doc);
+            }
+            if (hits == null) {
+                hits = tokenizeHits(text, lemmaIndexes);
+            }
+            Snippet snippet = SnippetHighlighter.highlight(text, hits);
+            responses.add(new SearchDataResponse(site.getUrl(), site.getName(), page.getPath(), title,
+                    snippet.getText(), rank.getRelativeRelevance(), snippet.getLemmasFound()));
+        }
+        return responses;
+    }
 
-        if (textFromElement.indexOf("<b>", start - 3) == (start - 3)) {
-            markWord(textFromElement, word, start + word.length());
-            return;
+    private Map<Integer, List<Hit>> findStoredHits(List<RankDto> window, Map<Integer, Integer> lemmaIndexById) {
+        Map<Integer, List<Hit>> hitsByPage = new HashMap<>();
+        if (window.isEmpty()) return hitsByPage;
+        Set<Integer> incomplete = new HashSet<>();
+        List<Integer> pageIds = window.stream().map(RankDto::getPageId).collect(Collectors.toList());
+        for (PagePositions row : indexRepository.findPositions(pageIds, lemmaIndexById.keySet())) {
+            if (row.getPositions() == null) {
+                incomplete.add(row.getPageId());
+                continue;
+            }
+            List<Hit> hits = hitsByPage.computeIfAbsent(row.getPageId(), id -> new ArrayList<>());
+            LemmaOccurrences occurrences = PositionCodec.decode(row.getPositions());
+            int lemmaIndex = lemmaIndexById.get(row.getLemmaId());
+            for (int i = 0; i < occurrences.count(); i++) {
+                hits.add(new Hit(occurrences.start(i), occurrences.end(i), lemmaIndex));
+            }
         }
+        hitsByPage.keySet().removeAll(incomplete);
+        return hitsByPage;
+    }
+
+    private List<Hit> tokenizeHits(String text, Map<String, Integer> lemmaIndexes) {
+        List<Hit> hits = new ArrayList<>();
+        lemmaService.getLemmaOccurrences(text).forEach((lemma, occurrences) -> {
+            Integer lemmaIndex = lemmaIndexes.get(lemma);
+            if (lemmaIndex == null) return;
+            for (int i = 0; i < occurrences.count(); i++) {
+                hits.add(new Hit(occurrences.start(i), occurrences.end(i), lemmaIndex));
+            }
+        });
+        return hits;
+    }
+
+    private Document parseLegacyPage(int pageId) {
+        return Jsoup.parse(pageRepository.findById(pageId).map(Page::getContent).orElse(""));
+    }
 
-        int end = start + word.length();
-        textFromElement.insert(start, "<b>");
-        textFromElement.insert(end + 3, "</b>");
+    private Boolean checkIndexStatusNotIndexed(String site) {
+        if (site == null || site.isBlank()) {
+            return siteRegistry.all().stream().anyMatch(s -> s.getStatus() != indexSuccessStatus);
+        }
+        SiteInfo siteInfo = siteRegistry.find(site);
+        return siteInfo == null || siteInfo.getStatus() != indexSuccessStatus;
     }
 }
@@ -0,0 +1,105 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.model.SitePage;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Адрес, имя и статус сайтов для поиска. Все сайты загружаются одним запросом при первом обращении,
+ * дальше реестр обновляется через {@link #update} при каждой смене статуса и хранит сайт до его удаления.
+ */
+@Component
+@RequiredArgsConstructor
+public class SiteRegistry {
+    private final SiteRepository siteRepository;
+    private final Map<Integer, SiteInfo> sites = new ConcurrentHashMap<>();
+    private final Map<String, SiteInfo> sitesByUrl = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    public Map<Integer, SiteInfo> get(Collection<Integer> siteIds) {
+        loadAll();
+        Map<Integer, SiteInfo> found = new HashMap<>();
+        List<Integer> missing = siteIds.stream()
+                .distinct()
+                .filter(id -> {
+                    SiteInfo site = sites.get(id);
+                    if (site != null) found.put(id, site);
+                    return site == null;
+                })
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            siteRepository.findAllById(missing).forEach(sitePage -> found.put(sitePage.getId(), update(sitePage)));
+        }
+        return found;
+    }
+
+    public SiteInfo find(String url) {
+        loadAll();
+        return sitesByUrl.get(url);
+    }
+
+    public Collection<SiteInfo> all() {
+        loadAll();
+        return sites.values();
+    }
+
+    public synchronized SiteInfo update(SitePage sitePage) {
+        SiteInfo site = new SiteInfo(sitePage.getId(), sitePage.getUrl(), sitePage.getName(), sitePage.getStatus());
+        sites.put(site.getId(), site);
+        sitesByUrl.put(site.getUrl(), site);
+        return site;
+    }
+
+    public synchronized void forget(int siteId) {
+        SiteInfo site = sites.remove(siteId);
+        if (site != null) sitesByUrl.remove(site.getUrl());
+    }
+
+    private void loadAll() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            siteRepository.findAll().forEach(this::update);
+            loaded = true;
+        }
+    }
+
+    public static final class SiteInfo {
+        private final int id;
+        private final String url;
+        private final String name;
+        private final Status status;
+
+        public SiteInfo(int id, String url, String name, Status status) {
+            this.id = id;
+            this.url = url;
+            this.name = name;
+            this.status = status;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+}
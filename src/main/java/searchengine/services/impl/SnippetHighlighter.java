@@ -0,0 +1,187 @@
+package searchengine.services.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Собирает сниппет по смещениям найденных слов в простом тексте страницы.
+ * Кандидаты — предложения (строки текста); лучшее то, что покрывает больше разных лемм
+ * запроса, при равенстве — с большим числом совпадений. Второй фрагмент добавляется,
+ * только если он покрывает леммы, которых нет в первом. Подсветка расставляется
+ * за один проход по фрагменту, текст экранируется для HTML.
+ */
+public final class SnippetHighlighter {
+    private static final int MAX_FRAGMENTS = 2;
+    private static final int MAX_FRAGMENT_LENGTH = 240;
+    private static final int CONTEXT_BEFORE = 60;
+    private static final String ELLIPSIS = "...";
+
+    private SnippetHighlighter() {
+    }
+
+    /**
+     * @param hits вхождения лемм запроса; lemma — номер леммы в запросе (меньше 64)
+     */
+    public static Snippet highlight(String text, List<Hit> hits) {
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort(Comparator.comparingInt(Hit::getStart));
+        List<Passage> passages = passages(text, sorted);
+        if (passages.isEmpty()) {
+            int end = text.indexOf('\n') < 0 ? text.length() : text.indexOf('\n');
+            return new Snippet(render(text, 0, Math.min(end, MAX_FRAGMENT_LENGTH), sorted, 0), 0);
+        }
+
+        Passage best = passages.get(0);
+        for (Passage passage : passages) {
+            if (passage.score() > best.score()) best = passage;
+        }
+        List<Passage> chosen = new ArrayList<>(List.of(best));
+        long covered = best.lemmas;
+        for (int i = 1; i < MAX_FRAGMENTS; i++) {
+            Passage extra = null;
+            for (Passage passage : passages) {
+                if ((passage.lemmas & ~covered) == 0) continue;
+                if (extra == null || Long.bitCount(passage.lemmas & ~covered) > Long.bitCount(extra.lemmas & ~covered)) {
+                    extra = passage;
+                }
+            }
+            if (extra == null) break;
+            chosen.add(extra);
+            covered |= extra.lemmas;
+        }
+        chosen.sort(Comparator.comparingInt(passage -> passage.start));
+
+        StringBuilder snippet = new StringBuilder();
+        for (Passage passage : chosen) {
+            if (snippet.length() > 0) snippet.append(' ').append(ELLIPSIS).append(' ');
+            snippet.append(render(text, passage.start, passage.end, sorted, passage.firstHit));
+        }
+        return new Snippet(snippet.toString(), Long.bitCount(covered));
+    }
+
+    private static List<Passage> passages(String text, List<Hit> hits) {
+        List<Passage> passages = new ArrayList<>();
+        Passage current = null;
+        for (int i = 0; i < hits.size(); i++) {
+            Hit hit = hits.get(i);
+            if (hit.start < 0 || hit.end > text.length()) continue;
+            if (current == null || hit.start >= current.lineEnd) {
+                int lineStart = text.lastIndexOf('\n', hit.start) + 1;
+                int lineEnd = text.indexOf('\n', hit.start);
+                current = new Passage(lineStart, lineEnd < 0 ? text.length() : lineEnd, i);
+                passages.add(current);
+            }
+            current.lemmas |= 1L << hit.lemma;
+            current.hits++;
+        }
+        for (Passage passage : passages) {
+            passage.trim(text, hits.get(passage.firstHit).start);
+        }
+        return passages;
+    }
+
+    private static String render(String text, int start, int end, List<Hit> hits, int firstHit) {
+        StringBuilder out = new StringBuilder(end - start + 32);
+        if (start > 0 && text.charAt(start - 1) != '\n') out.append(ELLIPSIS);
+        int hitIndex = firstHit;
+        while (hitIndex < hits.size() && hits.get(hitIndex).start < start) hitIndex++;
+        int i = start;
+        while (i < end) {
+            if (hitIndex < hits.size() && hits.get(hitIndex).start == i && hits.get(hitIndex).end <= end) {
+                Hit hit = hits.get(hitIndex++);
+                out.append("<b>");
+                for (; i < hit.end; i++) escape(out, text.charAt(i));
+                out.append("</b>");
+                continue;
+            }
+            while (hitIndex < hits.size() && hits.get(hitIndex).start < i) hitIndex++;
+            escape(out, text.charAt(i++));
+        }
+        if (end < text.length() && text.charAt(end) != '\n') out.append(ELLIPSIS);
+        return out.toString();
+    }
+
+    private static void escape(StringBuilder out, char c) {
+        switch (c) {
+            case '<' -> out.append("&lt;");
+            case '>' -> out.append("&gt;");
+            case '&' -> out.append("&amp;");
+            case '"' -> out.append("&quot;");
+            default -> out.append(c);
+        }
+    }
+
+    public static final class Hit {
+        private final int start;
+        private final int end;
+        private final int lemma;
+
+        public Hit(int start, int end, int lemma) {
+            this.start = start;
+            this.end = end;
+            this.lemma = lemma;
+        }
+
+        public int getStart() {
+            return start;
+        }
+    }
+
+    public static final class Snippet {
+        private final String text;
+        private final int lemmasFound;
+
+        public Snippet(String text, int lemmasFound) {
+            this.text = text;
+            this.lemmasFound = lemmasFound;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getLemmasFound() {
+            return lemmasFound;
+        }
+    }
+
+    private static final class Passage {
+        private int start;
+        private int end;
+        private final int lineEnd;
+        private final int firstHit;
+        private long lemmas;
+        private int hits;
+
+        Passage(int start, int lineEnd, int firstHit) {
+            this.start = start;
+            this.end = lineEnd;
+            this.lineEnd = lineEnd;
+            this.firstHit = firstHit;
+        }
+
+        long score() {
+            return Long.bitCount(lemmas) * 1_000_000L + hits;
+        }
+
+        /**
+         * Длинное предложение сокращается до окна вокруг первого совпадения по границам слов.
+         */
+        void trim(String text, int firstHitStart) {
+            if (end - start <= MAX_FRAGMENT_LENGTH) return;
+            int from = Math.max(start, firstHitStart - CONTEXT_BEFORE);
+            if (from > start) {
+                int space = text.indexOf(' ', from);
+                from = space < 0 || space >= firstHitStart ? from : space + 1;
+            }
+            int to = Math.min(end, from + MAX_FRAGMENT_LENGTH);
+            if (to < end) {
+                int space = text.lastIndexOf(' ', to);
+                to = space > from ? space : to;
+            }
+            start = from;
+            end = to;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.services.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Приводит ссылки к каноническому пути внутри сайта, чтобы одна страница
+ * не попадала в обход под разными адресами.
+ */
+public final class UrlCanonicalizer {
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "gclid", "dclid", "fbclid", "yclid", "ysclid", "_openstat", "mc_cid", "mc_eid");
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Возвращает канонический путь ссылки href, найденной на странице currentPath сайта siteUrl,
+     * или null, если ссылка ведёт за пределы сайта или не является http(s)-адресом.
+     */
+    public static String canonicalPath(String siteUrl, String currentPath, String href) {
+        if (href == null) return null;
+        String trimmedHref = href.trim();
+        if (trimmedHref.isEmpty() || trimmedHref.startsWith("#")) return null;
+        try {
+            URI site = new URI(siteUrl);
+            URI base = new URI(absoluteUrl(siteUrl, currentPath));
+            URI target = base.resolve(new URI(trimmedHref.replace(" ", "%20"))).normalize();
+            String scheme = target.getScheme() == null ? "" : target.getScheme().toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) return null;
+            if (target.getHost() == null || !sameSite(site.getHost(), target.getHost())) return null;
+            return canonicalPathAndQuery(target.getRawPath(), target.getRawQuery());
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public static String absoluteUrl(String siteUrl, String path) {
+        String root = siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+        return root + (path.isEmpty() ? "/" : path);
+    }
+
+    private static boolean sameSite(String siteHost, String host) {
+        return stripWww(siteHost.toLowerCase(Locale.ROOT)).equals(stripWww(host.toLowerCase(Locale.ROOT)));
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static String canonicalPathAndQuery(String rawPath, String rawQuery) {
+        String path = rawPath == null || rawPath.isEmpty() ? "/" : upperCaseEscapes(rawPath);
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String query = canonicalQuery(rawQuery);
+        return query.isEmpty() ? path : path + "?" + query;
+    }
+
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return "";
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) continue;
+            String name = parameter.split("=", 2)[0].toLowerCase(Locale.ROOT);
+            if (name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name)) continue;
+            parameters.add(upperCaseEscapes(parameter));
+        }
+        Collections.sort(parameters);
+        return String.join("&", parameters);
+    }
+
+    private static String upperCaseEscapes(String value) {
+        if (value.indexOf('%') < 0) return value;
+        StringBuilder result = new StringBuilder(value);
+        for (int i = result.indexOf("%"); i >= 0 && i + 2 < result.length(); i = result.indexOf("%", i + 1)) {
+            result.setCharAt(i + 1, Character.toUpperCase(result.charAt(i + 1)));
+            result.setCharAt(i + 2, Character.toUpperCase(result.charAt(i + 2)));
+        }
+        return result.toString();
+    }
+}
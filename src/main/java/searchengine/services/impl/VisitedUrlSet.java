@@ -0,0 +1,128 @@
+package searchengine.services.impl;
+
+/**
+ * Компактное множество посещённых URL: хранит только 64-битные хэши в открытой
+ * адресации, перед таблицей стоит фильтр Блума. Таблица растёт не дальше maxEntries;
+ * после этого новые хэши попадают только в фильтр Блума и проверка становится вероятностной.
+ * Класс не потокобезопасен, синхронизация остаётся на вызывающей стороне.
+ */
+public class VisitedUrlSet {
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int BLOOM_HASHES = 4;
+
+    private final int maxEntries;
+    private final long[] bloom;
+    private final long bloomBits;
+    private long[] slots = new long[INITIAL_SLOTS];
+    private int size = 0;
+    private boolean saturated = false;
+
+    public VisitedUrlSet(int maxEntries, int bloomBitsPerEntry) {
+        this.maxEntries = maxEntries;
+        this.bloom = new long[Math.max(1, (int) (((long) maxEntries * bloomBitsPerEntry + 63) / 64))];
+        this.bloomBits = (long) bloom.length * 64;
+    }
+
+    public static long hash(String url) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            h ^= url.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    public boolean contains(String url) {
+        return containsHash(hash(url));
+    }
+
+    public boolean containsHash(long hash) {
+        if (!bloomContains(hash)) return false;
+        return saturated || slots[findSlot(slots, hash)] == hash;
+    }
+
+    public boolean addHash(long hash) {
+        boolean maybePresent = bloomContains(hash);
+        if (maybePresent && saturated) return false;
+        int slot = findSlot(slots, hash);
+        if (slots[slot] == hash) return false;
+        bloomAdd(hash);
+        if (size >= maxEntries) {
+            saturated = true;
+            return true;
+        }
+        slots[slot] = hash;
+        size++;
+        if (size * 2 > slots.length) grow();
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public long[] hashes() {
+        long[] hashes = new long[size];
+        int index = 0;
+        for (long hash : slots) {
+            if (hash != 0) hashes[index++] = hash;
+        }
+        return hashes;
+    }
+
+    public long[] bloomWords() {
+        return bloom.clone();
+    }
+
+    public void restoreBloom(long[] words) {
+        for (int i = 0; i < Math.min(words.length, bloom.length); i++) {
+            bloom[i] |= words[i];
+        }
+        saturated = true;
+    }
+
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long hash : slots) {
+            if (hash != 0) grown[findSlot(grown, hash)] = hash;
+        }
+        slots = grown;
+    }
+
+    private static int findSlot(long[] table, long hash) {
+        int mask = table.length - 1;
+        int slot = (int) hash & mask;
+        while (table[slot] != 0 && table[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean bloomContains(long hash) {
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void bloomAdd(long hash) {
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+}
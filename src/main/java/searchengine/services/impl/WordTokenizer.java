@@ -0,0 +1,65 @@
+package searchengine.services.impl;
+
+import java.util.function.Consumer;
+
+/**
+ * Разбивает текст на русские слова одним проходом по символам без регулярных выражений.
+ * Слово — непрерывная последовательность букв; слова с латиницей пропускаются целиком,
+ * цифры и прочие символы служат разделителями, слова длиннее MAX_WORD_LENGTH отбрасываются.
+ * Буквы приводятся к нижнему регистру, «ё» — к «е».
+ */
+public final class WordTokenizer {
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private WordTokenizer() {
+    }
+
+    public static void forEachWord(CharSequence text, Consumer<String> consumer) {
+        forEachWord(text, (word, position, start, end) -> consumer.accept(word));
+    }
+
+    /**
+     * Передаёт каждое русское слово вместе с его порядковым номером среди всех слов текста
+     * (пропущенные слова тоже занимают позицию) и границами [start, end) в исходном тексте.
+     */
+    public static void forEachWord(CharSequence text, WordHandler handler) {
+        char[] buffer = new char[MAX_WORD_LENGTH];
+        int length = 0;
+        int position = 0;
+        boolean cyrillicOnly = true;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            char cyrillic = normalizeCyrillic(c);
+            if (cyrillic != 0) {
+                if (length < MAX_WORD_LENGTH) buffer[length] = cyrillic;
+                length++;
+            } else if (isLatin(c)) {
+                cyrillicOnly = false;
+                length++;
+            } else if (length > 0) {
+                if (cyrillicOnly && length <= MAX_WORD_LENGTH) {
+                    handler.accept(new String(buffer, 0, length), position, i - length, i);
+                }
+                position++;
+                length = 0;
+                cyrillicOnly = true;
+            }
+        }
+    }
+
+    private static char normalizeCyrillic(char c) {
+        if (c >= 'а' && c <= 'я') return c;
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        if (c == 'ё' || c == 'Ё') return 'е';
+        return 0;
+    }
+
+    private static boolean isLatin(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    @FunctionalInterface
+    public interface WordHandler {
+        void accept(String word, int position, int start, int end);
+    }
+}
@@ -0,0 +1,18 @@
+package searchengine.benchmark;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "benchmark-settings")
+public class BenchmarkSettings {
+    private int pages = 2000;
+    private int fanOut = 8;
+    private int pageWords = 400;
+    private long latencyMs = 20;
+    private double errorRate = 0.01;
+    private int serverThreads = 32;
+    private long seed = 42;
+}
@@ -0,0 +1,87 @@
+package searchengine.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import searchengine.Application;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.repositories.PageRepository;
+import searchengine.services.ApiService;
+import searchengine.services.impl.PageLatencyRecorder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Замер скорости обхода: поднимает {@link SyntheticSite}, индексирует его через
+ * {@link ApiService#startIndexing} и пишет в лог страницы в секунду, p50/p99 задержки
+ * от скачивания до сохранения и пиковый объём кучи.
+ * Лежит в тестовых исходниках и включается только профилем benchmark.
+ * Запуск: mvn test-compile exec:java -Dexec.mainClass=searchengine.benchmark.CrawlBenchmark -Dexec.classpathScope=test
+ */
+@Slf4j
+@Component
+@Profile("benchmark")
+@EnableConfigurationProperties(BenchmarkSettings.class)
+@RequiredArgsConstructor
+public class CrawlBenchmark implements CommandLineRunner {
+    private final BenchmarkSettings benchmarkSettings;
+    private final SitesList sitesList;
+    private final ApiService apiService;
+    private final PageRepository pageRepository;
+    private final PageLatencyRecorder latencyRecorder;
+
+    public static void main(String[] args) {
+        System.exit(SpringApplication.exit(new SpringApplicationBuilder(Application.class)
+                .profiles("benchmark")
+                .web(WebApplicationType.NONE)
+                .run(args)));
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        SyntheticSite syntheticSite = new SyntheticSite(benchmarkSettings);
+        syntheticSite.start();
+        try {
+            Site site = new Site();
+            site.setUrl(new URL(syntheticSite.getUrl()));
+            site.setName("Benchmark");
+            sitesList.setSites(List.of(site));
+
+            List<MemoryPoolMXBean> heapPools = heapPools();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            latencyRecorder.reset();
+
+            long start = System.nanoTime();
+            apiService.startIndexing(new AtomicBoolean(true));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long pages = pageRepository.count();
+            long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            log.info(String.format("Benchmark: %d страниц (задано %d, fan-out %d, %d слов, задержка %d мс, ошибки %.2f%%) за %.1f с",
+                    pages, benchmarkSettings.getPages(), benchmarkSettings.getFanOut(), benchmarkSettings.getPageWords(),
+                    benchmarkSettings.getLatencyMs(), benchmarkSettings.getErrorRate() * 100, seconds));
+            log.info(String.format("Benchmark: %.1f страниц/с, скачивание-сохранение p50 %d мс, p99 %d мс, пик кучи %d МБ",
+                    pages / seconds, latencyRecorder.percentile(50), latencyRecorder.percentile(99), peakHeap / (1024 * 1024)));
+        } finally {
+            syntheticSite.stop();
+        }
+    }
+
+    private List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+}
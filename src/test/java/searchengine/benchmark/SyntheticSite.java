@@ -0,0 +1,122 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Встроенный HTTP-сервер с синтетическим сайтом для замеров обхода.
+ * Страница /page/N (страница 0 — корень /) содержит pageWords русских слов и ссылается на fanOut страниц:
+ * на своих потомков N * fanOut + i, пока они есть, иначе на случайные страницы, так что из корня достижим весь сайт.
+ * Содержимое, ссылки и ошибки страницы зависят только от seed и номера страницы,
+ * поэтому каждый прогон обходит один и тот же граф.
+ */
+public class SyntheticSite {
+    private static final String[] WORDS = {
+            "поиск", "страница", "сайт", "индекс", "слово", "текст", "запрос", "лемма", "ссылка", "документ",
+            "новость", "город", "человек", "время", "работа", "история", "жизнь", "дорога", "книга", "музей",
+            "театр", "школа", "вопрос", "ответ", "решение", "система", "данные", "сервер", "клиент", "сеть",
+            "красивый", "новый", "старый", "большой", "маленький", "быстрый", "медленный", "русский", "важный", "открытый",
+            "читать", "писать", "искать", "находить", "строить", "работать", "говорить", "смотреть", "думать", "знать",
+            "и", "в", "на", "с", "по", "для", "но", "или", "как", "что"
+    };
+
+    private final BenchmarkSettings settings;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public SyntheticSite(BenchmarkSettings settings) {
+        this.settings = settings;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(settings.getServerThreads());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int pageNumber = pageNumber(exchange.getRequestURI().getPath());
+            sleep(settings.getLatencyMs());
+            if (pageNumber < 0) {
+                respond(exchange, 404, "<html><body>Нет такой страницы</body></html>");
+                return;
+            }
+            Random random = new Random(settings.getSeed() * 31 + pageNumber);
+            if (pageNumber > 0 && random.nextDouble() < settings.getErrorRate()) {
+                respond(exchange, 500, "<html><body>Ошибка сервера</body></html>");
+                return;
+            }
+            respond(exchange, 200, render(pageNumber, random));
+        }
+    }
+
+    private int pageNumber(String path) {
+        if (path.equals("/")) return 0;
+        if (!path.startsWith("/page/")) return -1;
+        try {
+            int pageNumber = Integer.parseInt(path.substring("/page/".length()));
+            return pageNumber > 0 && pageNumber < settings.getPages() ? pageNumber : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private String render(int pageNumber, Random random) {
+        StringBuilder html = new StringBuilder();
+        html.append("<html><head><title>Страница ").append(pageNumber).append("</title></head><body><p>");
+        for (int i = 0; i < settings.getPageWords(); i++) {
+            html.append(WORDS[random.nextInt(WORDS.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+        html.append("</p><ul>");
+        for (int i = 1; i <= settings.getFanOut(); i++) {
+            long child = (long) pageNumber * settings.getFanOut() + i;
+            int target = child < settings.getPages() ? (int) child : random.nextInt(settings.getPages());
+            html.append("<li><a href=\"").append(path(target)).append("\">страница ").append(target).append("</a></li>");
+        }
+        html.append("</ul></body></html>");
+        return html.toString();
+    }
+
+    private String path(int pageNumber) {
+        return pageNumber == 0 ? "/" : "/page/" + pageNumber;
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.impl.CorpusStatistics.PageLengths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CorpusStatisticsTest {
+
+    @Test
+    void keepsLengthsPerSite() {
+        CorpusStatistics statistics = new CorpusStatistics(null);
+        statistics.addPage(1, 10, 100);
+        statistics.addPage(1, 20, 300);
+        statistics.addPage(2, 1_000_000, 50);
+
+        assertEquals(2, statistics.pageCount(1));
+        assertEquals(3, statistics.pageCount(null));
+        assertEquals(200.0, statistics.averageLength(1));
+        assertEquals(300, statistics.pageLengths(1).get(20));
+        assertEquals(0, statistics.pageLengths(1).get(1_000_000));
+        assertEquals(50, statistics.pageLengths(2).get(1_000_000));
+        assertEquals(0, statistics.pageLengths(3).get(10));
+    }
+
+    @Test
+    void reindexedPageReplacesItsLength() {
+        CorpusStatistics statistics = new CorpusStatistics(null);
+        statistics.addPage(1, 10, 100);
+        statistics.addPage(1, 10, 40);
+
+        assertEquals(1, statistics.pageCount(1));
+        assertEquals(40.0, statistics.averageLength(1));
+    }
+
+    @Test
+    void removedPagesFreeTheirSlots() {
+        CorpusStatistics statistics = new CorpusStatistics(null);
+        for (int pageId = 1; pageId <= 1_000; pageId++) {
+            statistics.addPage(1, pageId, pageId);
+        }
+        for (int pageId = 1; pageId <= 1_000; pageId += 2) {
+            statistics.removePage(1, pageId);
+        }
+        statistics.removePage(1, 5_000);
+
+        PageLengths lengths = statistics.pageLengths(1);
+        assertEquals(500, lengths.size());
+        assertEquals(500, statistics.pageCount(1));
+        assertEquals(0, lengths.get(999));
+        assertEquals(1_000, lengths.get(1_000));
+        assertEquals(501.0, statistics.averageLength(1));
+    }
+
+    @Test
+    void removingSiteDropsItsLengths() {
+        CorpusStatistics statistics = new CorpusStatistics(null);
+        statistics.addPage(1, 10, 100);
+        statistics.removeSite(1);
+
+        assertEquals(0, statistics.pageCount(1));
+        assertEquals(0, statistics.pageLengths(1).get(10));
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.dto.LemmaOccurrences;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionCodecTest {
+
+    @Test
+    void encodesNoOccurrencesAsEmptyArray() {
+        assertArrayEquals(new byte[0], PositionCodec.encode(new LemmaOccurrences()));
+        assertEquals(0, PositionCodec.decode(new byte[0]).count());
+        assertEquals(0, PositionCodec.decode(null).count());
+    }
+
+    @Test
+    void writesSmallDeltasInOneByteEach() {
+        LemmaOccurrences occurrences = new LemmaOccurrences();
+        occurrences.add(3, 10, 15);
+
+        assertArrayEquals(new byte[]{3, 10, 5}, PositionCodec.encode(occurrences));
+    }
+
+    @Test
+    void roundTripsOccurrences() {
+        LemmaOccurrences occurrences = new LemmaOccurrences();
+        occurrences.add(0, 0, 4);
+        occurrences.add(7, 42, 49);
+        occurrences.add(200, 1_500, 1_512);
+        occurrences.add(100_000, 3_000_000, 3_000_020);
+
+        LemmaOccurrences decoded = PositionCodec.decode(PositionCodec.encode(occurrences));
+
+        assertEquals(occurrences.count(), decoded.count());
+        for (int i = 0; i < occurrences.count(); i++) {
+            assertEquals(occurrences.position(i), decoded.position(i));
+            assertEquals(occurrences.start(i), decoded.start(i));
+            assertEquals(occurrences.end(i), decoded.end(i));
+        }
+    }
+}
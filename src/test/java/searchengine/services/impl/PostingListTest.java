@@ -0,0 +1,106 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.impl.PostingList.Postings;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PostingListTest {
+
+    @Test
+    void emptyListHasNoPostings() {
+        PostingList postingList = new PostingList();
+
+        assertEquals(0, postingList.size());
+        assertEquals(0, postingList.read().size());
+    }
+
+    @Test
+    void keepsSinglePosting() {
+        PostingList postingList = new PostingList();
+        postingList.put(42, 3);
+
+        Postings postings = postingList.read();
+        assertEquals(1, postings.size());
+        assertEquals(42, postings.pageId(0));
+        assertEquals(3, postings.count(0));
+    }
+
+    @Test
+    void readsPostingsInPageIdOrder() {
+        PostingList postingList = new PostingList();
+        postingList.put(300, 1);
+        postingList.put(5, 2);
+        postingList.put(70_000, 4);
+
+        assertArrayEquals(new int[]{5, 300, 70_000}, pageIds(postingList.read()));
+    }
+
+    @Test
+    void mergesChangesIntoCompactedList() {
+        PostingList postingList = new PostingList();
+        postingList.put(1, 1);
+        postingList.put(2, 1);
+        postingList.put(3, 1);
+        assertEquals(3, postingList.size());
+
+        postingList.remove(2);
+        postingList.put(3, 7);
+        postingList.put(4, 1);
+        postingList.remove(10);
+
+        Postings postings = postingList.read();
+        assertArrayEquals(new int[]{1, 3, 4}, pageIds(postings));
+        assertEquals(7, postings.count(1));
+    }
+
+    @Test
+    void removingEveryPostingLeavesEmptyList() {
+        PostingList postingList = new PostingList();
+        postingList.put(1, 1);
+        postingList.put(2, 1);
+        assertEquals(2, postingList.size());
+
+        postingList.remove(1);
+        postingList.remove(2);
+
+        assertEquals(0, postingList.size());
+        assertEquals(0, postingList.read().size());
+    }
+
+    @Test
+    void compactsWhenPendingBufferOverflows() {
+        PostingList postingList = new PostingList();
+        for (int pageId = 1000; pageId > 0; pageId--) {
+            postingList.put(pageId, pageId % 5 + 1);
+        }
+        for (int pageId = 2; pageId <= 1000; pageId += 2) {
+            postingList.remove(pageId);
+        }
+
+        Postings postings = postingList.read();
+        assertEquals(500, postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            assertEquals(2 * i + 1, postings.pageId(i));
+            assertEquals((2 * i + 1) % 5 + 1, postings.count(i));
+        }
+    }
+
+    @Test
+    void buildsFromSortedArrays() {
+        PostingList postingList = PostingList.build(new int[]{2, 9, 130, 0}, new int[]{1, 2, 3, 0}, 3);
+
+        Postings postings = postingList.read();
+        assertArrayEquals(new int[]{2, 9, 130}, pageIds(postings));
+        assertEquals(3, postings.count(2));
+    }
+
+    private static int[] pageIds(Postings postings) {
+        int[] pageIds = new int[postings.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = postings.pageId(i);
+        }
+        return pageIds;
+    }
+}
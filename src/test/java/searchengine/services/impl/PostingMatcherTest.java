@@ -0,0 +1,108 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.impl.PostingList.Postings;
+import searchengine.services.impl.PostingMatcher.Matches;
+import searchengine.services.impl.PostingMatcher.TermScorer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PostingMatcherTest {
+
+    @Test
+    void gallopReturnsFirstIndexNotBelowTarget() {
+        Postings postings = postings(1, 3, 5, 7, 9, 11, 13);
+
+        assertEquals(0, PostingMatcher.gallop(postings, 0, 0));
+        assertEquals(2, PostingMatcher.gallop(postings, 5, 0));
+        assertEquals(3, PostingMatcher.gallop(postings, 6, 1));
+        assertEquals(6, PostingMatcher.gallop(postings, 13, 0));
+        assertEquals(4, PostingMatcher.gallop(postings, 2, 4));
+    }
+
+    @Test
+    void gallopStopsAtEndWhenTargetIsPastLastPage() {
+        Postings postings = postings(1, 3, 5, 7, 9);
+
+        assertEquals(5, PostingMatcher.gallop(postings, 100, 0));
+        assertEquals(5, PostingMatcher.gallop(postings, 100, 3));
+        assertEquals(5, PostingMatcher.gallop(postings, 1, 5));
+        assertEquals(0, PostingMatcher.gallop(postings(), 1, 0));
+    }
+
+    @Test
+    void allWithoutListsMatchesNothing() {
+        assertEquals(0, PostingMatcher.all(List.of(), TermScorer.NONE).size());
+    }
+
+    @Test
+    void allWithEmptyListMatchesNothing() {
+        Matches matches = PostingMatcher.all(List.of(postings(), postings(1, 2, 3)), TermScorer.NONE);
+
+        assertEquals(0, matches.size());
+    }
+
+    @Test
+    void allWithOneElementListChecksItAgainstOthers() {
+        Matches matches = PostingMatcher.all(List.of(postings(7), postings(1, 3, 7, 9), postings(2, 7)), TermScorer.NONE);
+
+        assertArrayEquals(new int[]{7}, pageIds(matches));
+    }
+
+    @Test
+    void allKeepsPagesPresentInEveryList() {
+        Postings rare = counted(new int[]{2, 4, 8, 16}, new int[]{1, 2, 3, 4});
+        Postings common = counted(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, new int[]{5, 5, 5, 5, 5, 5, 5, 5, 5, 5});
+
+        Matches matches = PostingMatcher.all(List.of(rare, common), TermScorer.NONE);
+
+        assertArrayEquals(new int[]{2, 4, 8}, pageIds(matches));
+        assertEquals(7, matches.sum(1));
+        assertEquals(5, matches.maxCount(1));
+    }
+
+    @Test
+    void atLeastCountsMatchedLists() {
+        List<Postings> postings = List.of(postings(1, 2, 3), postings(2, 3, 4), postings(3, 4, 5));
+
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, pageIds(PostingMatcher.atLeast(postings, 1, TermScorer.NONE)));
+        assertArrayEquals(new int[]{2, 3, 4}, pageIds(PostingMatcher.atLeast(postings, 2, TermScorer.NONE)));
+        assertArrayEquals(new int[]{3}, pageIds(PostingMatcher.atLeast(postings, 3, TermScorer.NONE)));
+    }
+
+    @Test
+    void atLeastSkipsEmptyLists() {
+        Matches matches = PostingMatcher.atLeast(List.of(postings(), postings(4)), 1, TermScorer.NONE);
+
+        assertArrayEquals(new int[]{4}, pageIds(matches));
+    }
+
+    @Test
+    void scorerReceivesListIndexAndCount() {
+        TermScorer scorer = (list, pageId, count) -> (list + 1) * 10.0 + count;
+        Postings first = counted(new int[]{5}, new int[]{2});
+        Postings second = counted(new int[]{5, 6}, new int[]{3, 1});
+
+        assertEquals(12.0 + 23.0, PostingMatcher.all(List.of(first, second), scorer).score(0), 1e-9);
+        assertEquals(12.0 + 23.0, PostingMatcher.atLeast(List.of(first, second), 2, scorer).score(0), 1e-9);
+    }
+
+    private static Postings postings(int... pageIds) {
+        return new Postings(pageIds, new int[pageIds.length]);
+    }
+
+    private static Postings counted(int[] pageIds, int[] counts) {
+        return new Postings(pageIds, counts);
+    }
+
+    private static int[] pageIds(Matches matches) {
+        int[] pageIds = new int[matches.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = matches.pageId(i);
+        }
+        return pageIds;
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RankedPagesTest {
+
+    @Test
+    void emptyPagesHaveNoTopRelevance() {
+        RankedPages ranks = RankedPages.of(new int[0], new double[0]);
+
+        assertEquals(0, ranks.size());
+        assertEquals(0.0, ranks.topRelevance());
+        assertEquals(0, ranks.indexAfter(1.0, 1));
+    }
+
+    @Test
+    void ranksByRelevanceThenPageId() {
+        RankedPages ranks = RankedPages.of(new int[]{5, 3, 9, 1}, new double[]{0.5, 0.9, 0.5, 0.1});
+        ranks.rankTo(4);
+
+        assertEquals(3, ranks.pageId(0));
+        assertEquals(5, ranks.pageId(1));
+        assertEquals(9, ranks.pageId(2));
+        assertEquals(1, ranks.pageId(3));
+    }
+
+    @Test
+    void extendsOrderOnlyAsFarAsRequested() {
+        int size = 1_000;
+        int[] pageIds = IntStream.range(0, size).toArray();
+        double[] relevances = new Random(7).doubles(size).toArray();
+        int[] expected = IntStream.range(0, size).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> -relevances[i]).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        RankedPages ranks = RankedPages.of(pageIds.clone(), relevances.clone());
+
+        for (int count : new int[]{1, 10, 11, 500, size}) {
+            ranks.rankTo(count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected[i], ranks.pageId(i));
+                assertEquals(relevances[expected[i]], ranks.relevance(i));
+            }
+        }
+    }
+
+    @Test
+    void findsPositionAfterCursorBeyondRankedPrefix() {
+        int size = 200;
+        int[] pageIds = IntStream.range(0, size).toArray();
+        double[] relevances = IntStream.range(0, size).mapToDouble(i -> (i * 37 % size) / (double) size).toArray();
+        RankedPages ranks = RankedPages.of(pageIds, relevances);
+        RankedPages sorted = RankedPages.of(pageIds.clone(), relevances.clone());
+        sorted.rankTo(size);
+
+        int after = ranks.indexAfter(sorted.relevance(149), sorted.pageId(149));
+        ranks.rankTo(after + 1);
+
+        assertEquals(150, after);
+        assertEquals(sorted.pageId(150), ranks.pageId(150));
+        assertEquals(size, ranks.indexAfter(-1.0, 0));
+    }
+
+    @Test
+    void scalingKeepsOrder() {
+        RankedPages ranks = RankedPages.of(new int[]{1, 2, 3}, new double[]{2.0, 4.0, 1.0});
+        ranks.scale(0.25);
+        ranks.rankTo(3);
+
+        assertEquals(2, ranks.pageId(0));
+        assertEquals(1.0, ranks.relevance(0));
+        assertEquals(3, ranks.pageId(2));
+        assertEquals(0.25, ranks.relevance(2));
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripsThroughString() {
+        SearchCursor cursor = SearchCursor.decode(new SearchCursor(-17, 0.625, 4242).encode());
+
+        assertEquals(-17, cursor.getQueryHash());
+        assertEquals(0.625, cursor.getRelevance());
+        assertEquals(4242, cursor.getPageId());
+    }
+
+    @Test
+    void rejectsMalformedStrings() {
+        assertNull(SearchCursor.decode("not a cursor!"));
+        assertNull(SearchCursor.decode(""));
+        assertNull(SearchCursor.decode("AAAA"));
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.impl.SnippetHighlighter.Hit;
+import searchengine.services.impl.SnippetHighlighter.Snippet;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnippetHighlighterTest {
+
+    @Test
+    void highlightsHitsInTheirSentence() {
+        String text = "Первая строка\nКот сидит на окне\nПоследняя строка";
+
+        Snippet snippet = SnippetHighlighter.highlight(text, List.of(new Hit(14, 17, 0)));
+
+        assertEquals("<b>Кот</b> сидит на окне", snippet.getText());
+        assertEquals(1, snippet.getLemmasFound());
+    }
+
+    @Test
+    void prefersSentenceCoveringMoreLemmas() {
+        String text = "кот кот кот\nкот и пёс";
+
+        Snippet snippet = SnippetHighlighter.highlight(text, List.of(
+                new Hit(0, 3, 0), new Hit(4, 7, 0), new Hit(8, 11, 0),
+                new Hit(12, 15, 0), new Hit(18, 21, 1)));
+
+        assertEquals("<b>кот</b> и <b>пёс</b>", snippet.getText());
+        assertEquals(2, snippet.getLemmasFound());
+    }
+
+    @Test
+    void addsSecondFragmentOnlyForMissingLemmas() {
+        String text = "кот спит\nкот ест\nпёс лает";
+
+        Snippet snippet = SnippetHighlighter.highlight(text, List.of(
+                new Hit(0, 3, 0), new Hit(9, 12, 0), new Hit(17, 20, 1)));
+
+        assertEquals("<b>кот</b> спит ... <b>пёс</b> лает", snippet.getText());
+        assertEquals(2, snippet.getLemmasFound());
+    }
+
+    @Test
+    void escapesHtml() {
+        String text = "a <b> & \"кот\"";
+
+        Snippet snippet = SnippetHighlighter.highlight(text, List.of(new Hit(9, 12, 0)));
+
+        assertEquals("a &lt;b&gt; &amp; &quot;<b>кот</b>&quot;", snippet.getText());
+    }
+
+    @Test
+    void trimsLongSentenceAroundFirstHit() {
+        String text = "слово ".repeat(100) + "кот " + "слово ".repeat(100);
+        int start = text.indexOf("кот");
+
+        Snippet snippet = SnippetHighlighter.highlight(text, List.of(new Hit(start, start + 3, 0)));
+
+        assertTrue(snippet.getText().startsWith("..."));
+        assertTrue(snippet.getText().endsWith("..."));
+        assertTrue(snippet.getText().contains("<b>кот</b>"));
+        assertTrue(snippet.getText().length() < 260);
+    }
+
+    @Test
+    void fallsBackToFirstLineWithoutHits() {
+        Snippet snippet = SnippetHighlighter.highlight("Заголовок\nТекст", List.of(new Hit(100, 103, 0)));
+
+        assertEquals("Заголовок", snippet.getText());
+        assertEquals(0, snippet.getLemmasFound());
+    }
+}
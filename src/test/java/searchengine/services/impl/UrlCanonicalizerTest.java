@@ -0,0 +1,59 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UrlCanonicalizerTest {
+    private static final String SITE = "https://example.com";
+
+    @Test
+    void resolvesRelativeLinksAgainstCurrentPage() {
+        assertEquals("/a/b", UrlCanonicalizer.canonicalPath(SITE, "/a/c", "b"));
+        assertEquals("/b", UrlCanonicalizer.canonicalPath(SITE, "/a/c", "../b"));
+        assertEquals("/b", UrlCanonicalizer.canonicalPath(SITE, "/a/c", "/x/../b"));
+    }
+
+    @Test
+    void dropsTrailingSlashAndFragment() {
+        assertEquals("/news", UrlCanonicalizer.canonicalPath(SITE, "/", "/news/#top"));
+        assertEquals("/", UrlCanonicalizer.canonicalPath(SITE, "/news", "/"));
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", "#top"));
+    }
+
+    @Test
+    void ignoresDefaultPortAndWwwPrefix() {
+        assertEquals("/a", UrlCanonicalizer.canonicalPath(SITE, "/", "https://example.com:443/a"));
+        assertEquals("/a", UrlCanonicalizer.canonicalPath("http://example.com", "/", "http://example.com:80/a"));
+        assertEquals("/a", UrlCanonicalizer.canonicalPath(SITE, "/", "https://WWW.Example.com/a"));
+    }
+
+    @Test
+    void normalizesPercentEncoding() {
+        assertEquals("/%D0%B0", UrlCanonicalizer.canonicalPath(SITE, "/", "/%d0%b0"));
+        assertEquals("/a%20b", UrlCanonicalizer.canonicalPath(SITE, "/", "/a b"));
+        assertEquals("/s?q=%2F", UrlCanonicalizer.canonicalPath(SITE, "/", "/s?q=%2f"));
+    }
+
+    @Test
+    void sortsQueryAndDropsTrackingParameters() {
+        assertEquals("/s?a=1&b=2", UrlCanonicalizer.canonicalPath(SITE, "/", "/s?b=2&utm_source=x&a=1&gclid=y"));
+        assertEquals("/s", UrlCanonicalizer.canonicalPath(SITE, "/", "/s?utm_medium=x"));
+    }
+
+    @Test
+    void rejectsForeignAndNonHttpLinks() {
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", "https://other.com/a"));
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", "mailto:info@example.com"));
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", "javascript:void(0)"));
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", "  "));
+        assertNull(UrlCanonicalizer.canonicalPath(SITE, "/", null));
+    }
+
+    @Test
+    void buildsAbsoluteUrl() {
+        assertEquals("https://example.com/a", UrlCanonicalizer.absoluteUrl(SITE + "/", "/a"));
+        assertEquals("https://example.com/", UrlCanonicalizer.absoluteUrl(SITE, ""));
+    }
+}
@@ -0,0 +1,75 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitedUrlSetTest {
+
+    @Test
+    void emptySetContainsNothing() {
+        VisitedUrlSet set = new VisitedUrlSet(100, 10);
+
+        assertFalse(set.contains("/"));
+        assertEquals(0, set.size());
+        assertEquals(0, set.hashes().length);
+        assertFalse(set.isSaturated());
+    }
+
+    @Test
+    void addsHashOnlyOnce() {
+        VisitedUrlSet set = new VisitedUrlSet(100, 10);
+        long hash = VisitedUrlSet.hash("/news");
+
+        assertTrue(set.addHash(hash));
+        assertFalse(set.addHash(hash));
+        assertTrue(set.contains("/news"));
+        assertFalse(set.contains("/news/"));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void keepsAllEntriesWhenTableGrows() {
+        VisitedUrlSet set = new VisitedUrlSet(10_000, 10);
+        for (int i = 0; i < 5_000; i++) {
+            set.addHash(VisitedUrlSet.hash("/page/" + i));
+        }
+
+        assertEquals(5_000, set.size());
+        assertEquals(5_000, set.hashes().length);
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(set.contains("/page/" + i));
+        }
+        assertFalse(set.isSaturated());
+    }
+
+    @Test
+    void fallsBackToBloomFilterWhenSaturated() {
+        VisitedUrlSet set = new VisitedUrlSet(10, 10);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(set.addHash(VisitedUrlSet.hash("/page/" + i)));
+        }
+
+        assertTrue(set.isSaturated());
+        assertEquals(10, set.size());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(set.contains("/page/" + i));
+        }
+    }
+
+    @Test
+    void restoredBloomFilterKeepsVisitedUrls() {
+        VisitedUrlSet set = new VisitedUrlSet(100, 10);
+        set.addHash(VisitedUrlSet.hash("/a"));
+        set.addHash(VisitedUrlSet.hash("/b"));
+
+        VisitedUrlSet restored = new VisitedUrlSet(100, 10);
+        restored.restoreBloom(set.bloomWords());
+
+        assertTrue(restored.isSaturated());
+        assertTrue(restored.contains("/a"));
+        assertTrue(restored.contains("/b"));
+    }
+}